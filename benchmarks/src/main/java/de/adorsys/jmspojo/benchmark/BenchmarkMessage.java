@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of the benchmarks, its serialized size grows with the number of items.
+ */
+public class BenchmarkMessage {
+
+	private String id;
+	private long timestamp;
+	private List<Item> items = new ArrayList<>();
+
+	public BenchmarkMessage() {
+	}
+
+	public static BenchmarkMessage create(int itemCount) {
+		BenchmarkMessage message = new BenchmarkMessage();
+		message.setId("message-" + itemCount);
+		message.setTimestamp(1457000000000L);
+		for (int i = 0; i < itemCount; i++) {
+			message.getItems().add(new Item("item-" + i, i, i * 0.5));
+		}
+		return message;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public List<Item> getItems() {
+		return items;
+	}
+
+	public void setItems(List<Item> items) {
+		this.items = items;
+	}
+
+	public static class Item {
+		private String name;
+		private int quantity;
+		private double price;
+
+		public Item() {
+		}
+
+		public Item(String name, int quantity, double price) {
+			this.name = name;
+			this.quantity = quantity;
+			this.price = price;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+	}
+
+}
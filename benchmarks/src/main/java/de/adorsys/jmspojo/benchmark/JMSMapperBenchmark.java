@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.adorsys.jmspojo.JMSBinaryObjectMapper;
+import de.adorsys.jmspojo.JMSJacksonBytesMapper;
+import de.adorsys.jmspojo.JMSJacksonMapper;
+import de.adorsys.jmspojo.JMSJacksonSmileMapper;
+
+/**
+ * Serialization and deserialization of the mappers for payloads from a few bytes up to about 500 KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JMSMapperBenchmark {
+
+	@Param({"1", "100", "10000"})
+	private int items;
+
+	private final JMSJacksonMapper jsonMapper = new JMSJacksonMapper(new ObjectMapper());
+	private final JMSJacksonBytesMapper bytesMapper = new JMSJacksonBytesMapper(new ObjectMapper());
+	private final JMSJacksonSmileMapper smileMapper = new JMSJacksonSmileMapper();
+	private BenchmarkMessage message;
+	private String json;
+	private byte[] jsonBytes;
+	private byte[] smile;
+
+	@Setup
+	public void setup() {
+		message = BenchmarkMessage.create(items);
+		json = jsonMapper.serialize(message);
+		jsonBytes = serialize(bytesMapper);
+		smile = serialize(smileMapper);
+	}
+
+	@Benchmark
+	public String serializeJson() {
+		return jsonMapper.serialize(message);
+	}
+
+	@Benchmark
+	public BenchmarkMessage deserializeJson() {
+		return jsonMapper.deserialize(json, BenchmarkMessage.class);
+	}
+
+	@Benchmark
+	public byte[] serializeJsonBytes() {
+		return serialize(bytesMapper);
+	}
+
+	@Benchmark
+	public BenchmarkMessage deserializeJsonBytes() {
+		return bytesMapper.deserialize(new ByteArrayInputStream(jsonBytes), BenchmarkMessage.class);
+	}
+
+	@Benchmark
+	public byte[] serializeSmile() {
+		return serialize(smileMapper);
+	}
+
+	@Benchmark
+	public BenchmarkMessage deserializeSmile() {
+		return smileMapper.deserialize(new ByteArrayInputStream(smile), BenchmarkMessage.class);
+	}
+
+	private byte[] serialize(JMSBinaryObjectMapper mapper) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		mapper.serialize(message, out);
+		return out.toByteArray();
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.adorsys.jmspojo.JMSProperties;
+
+/**
+ * Mapping message headers from and to JMS message properties.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JMSPropertiesBenchmark {
+
+	@Param({"2", "20"})
+	private int headers;
+
+	private Map<String, Object> properties;
+	private ActiveMQTextMessage message;
+
+	@Setup
+	public void setup() throws JMSException {
+		properties = new HashMap<>();
+		for (int i = 0; i < headers; i++) {
+			properties.put("header" + i, i % 2 == 0 ? "value" + i : (Object) i);
+		}
+		message = new ActiveMQTextMessage();
+		new JMSProperties(message).setProperties(properties);
+	}
+
+	@Benchmark
+	public ActiveMQTextMessage setProperties() {
+		ActiveMQTextMessage target = new ActiveMQTextMessage();
+		new JMSProperties(target).setProperties(properties);
+		return target;
+	}
+
+	@Benchmark
+	public Map<String, Object> toMap() {
+		return new JMSProperties(message).toMap();
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.adorsys.jmspojo.JMSConnectionPool;
+import de.adorsys.jmspojo.JMSJacksonMapper;
+import de.adorsys.jmspojo.JMSServiceAdapterFactory;
+
+/**
+ * Cost of a fire and forget call in the adapter itself: proxy dispatch, serialization and
+ * pooled sessions, sent to producers which drop the messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JMSProxyBenchmark {
+
+	private final BenchmarkMessage message = BenchmarkMessage.create(1);
+	private final Map<String, Object> headers = new HashMap<>();
+	private JMSConnectionPool pool;
+	private BenchmarkService dynamicProxy;
+	private BenchmarkService generatedProxy;
+
+	@Setup
+	public void setup() {
+		headers.put("tenant", "benchmark");
+		pool = new JMSConnectionPool(new NullConnectionFactory(), 1, 16, 60000);
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(new JMSJacksonMapper(new ObjectMapper()), pool, new ActiveMQQueue("Null"), 1000);
+		dynamicProxy = factory.generateJMSServiceProxy(BenchmarkService.class);
+		generatedProxy = factory.generateJMSServiceProxy(GeneratedBenchmarkService.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Benchmark
+	public void dynamicProxy() {
+		dynamicProxy.send(message);
+	}
+
+	@Benchmark
+	public void dynamicProxyWithHeaders() {
+		dynamicProxy.send(headers, message);
+	}
+
+	@Benchmark
+	public void generatedProxy() {
+		generatedProxy.send(message);
+	}
+
+	@Benchmark
+	public void generatedProxyWithHeaders() {
+		generatedProxy.send(headers, message);
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.adorsys.jmspojo.JMSConnectionPool;
+import de.adorsys.jmspojo.JMSFuture;
+import de.adorsys.jmspojo.JMSJacksonMapper;
+import de.adorsys.jmspojo.JMSMessageListenerServiceAdapter;
+import de.adorsys.jmspojo.JMSReplyChannel;
+import de.adorsys.jmspojo.JMSServiceAdapterFactory;
+
+/**
+ * Fire and forget throughput and request/reply latency through an embedded non persistent
+ * broker on <code>vm://</code>, the listeners are served by {@link JMSMessageListenerServiceAdapter}s.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JMSRoundTripBenchmark {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+
+	/**
+	 * unpooled: a connection per call, pooled: a {@link JMSConnectionPool},
+	 * replyChannel: pooled with one shared reply queue
+	 */
+	@Param({"unpooled", "pooled", "replyChannel"})
+	private String mode;
+
+	private final BenchmarkMessage message = BenchmarkMessage.create(10);
+	private BrokerService broker;
+	private QueueConnection listenerConnection;
+	private JMSConnectionPool pool;
+	private JMSReplyChannel replyChannel;
+	private BenchmarkService sinkService;
+	private BenchmarkService echoService;
+
+	@Setup
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+		broker.setUseJmx(false);
+		broker.setBrokerName("benchmark");
+		broker.addConnector("vm://benchmark");
+		broker.setUseShutdownHook(false);
+		broker.start();
+
+		ActiveMQConnectionFactory cf = new ActiveMQConnectionFactory("vm://benchmark?create=false");
+		listenerConnection = cf.createQueueConnection();
+		QueueSession echoSession = listenerConnection.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue echoQueue = echoSession.createQueue("Echo");
+		listen(echoSession, echoQueue, JMSMessageListenerServiceAdapter.createAdapter(new BenchmarkReceivers.Echo(), cf, OBJECT_MAPPER));
+		QueueSession sinkSession = listenerConnection.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue sinkQueue = sinkSession.createQueue("Sink");
+		listen(sinkSession, sinkQueue, JMSMessageListenerServiceAdapter.createAdapter(new BenchmarkReceivers.Sink(), cf, OBJECT_MAPPER));
+		listenerConnection.start();
+
+		pool = "unpooled".equals(mode) ? JMSConnectionPool.unpooled(cf) : new JMSConnectionPool(cf, 2, 16, 60000);
+		JMSServiceAdapterFactory sinkFactory = new JMSServiceAdapterFactory(OBJECT_MAPPER, pool, sinkQueue, 5000);
+		sinkService = sinkFactory.generateJMSServiceProxy(GeneratedBenchmarkService.class);
+		JMSServiceAdapterFactory echoFactory = new JMSServiceAdapterFactory(OBJECT_MAPPER, pool, echoQueue, 5000);
+		if ("replyChannel".equals(mode)) {
+			replyChannel = new JMSReplyChannel(cf);
+			echoFactory.setReplyChannel(replyChannel);
+		}
+		echoService = echoFactory.generateJMSServiceProxy(GeneratedBenchmarkService.class);
+	}
+
+	private static void listen(QueueSession session, Queue queue, final JMSMessageListenerServiceAdapter<?> adapter) throws Exception {
+		session.createReceiver(queue).setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		if (replyChannel != null) {
+			replyChannel.close();
+		}
+		pool.close();
+		listenerConnection.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public void fireAndForget() {
+		sinkService.send(message);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public BenchmarkMessage requestReply() throws ExecutionException {
+		try (JMSFuture<BenchmarkMessage> future = echoService.echo(message)) {
+			return future.get();
+		}
+	}
+
+}
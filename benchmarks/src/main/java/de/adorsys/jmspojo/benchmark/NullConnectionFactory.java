@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+
+/**
+ * Connection factory whose producers drop every message, so a benchmark measures the adapter alone:
+ * proxy dispatch, serialization and session pooling, without a broker.
+ */
+public class NullConnectionFactory implements ConnectionFactory {
+
+	@Override
+	public Connection createConnection() {
+		return create(Connection.class);
+	}
+
+	@Override
+	public Connection createConnection(String userName, String password) {
+		return createConnection();
+	}
+
+	private static <T> T create(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(NullConnectionFactory.class.getClassLoader(), new Class<?>[] {type}, new NullHandler()));
+	}
+
+	private static class NullHandler implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			Class<?> returnType = method.getReturnType();
+			if (returnType == Session.class) {
+				return create(Session.class);
+			} else if (returnType == MessageProducer.class) {
+				return create(MessageProducer.class);
+			} else if ("createTextMessage".equals(method.getName())) {
+				return new ActiveMQTextMessage();
+			} else if ("createBytesMessage".equals(method.getName())) {
+				return new ActiveMQBytesMessage();
+			} else if (returnType == boolean.class) {
+				return false;
+			} else if (returnType == int.class) {
+				return 0;
+			} else if (returnType == long.class) {
+				return 0L;
+			}
+			return null;
+		}
+	}
+
+}
@@ -32,7 +32,11 @@ public abstract class JMSAbstractMessageListener<T> implements MessageListener {
 	
 	@PostConstruct
 	protected void init() {
-		adapter = JMSMessageListenerServiceAdapter.createAdapter(getService(), getConnectionFactory(), getObjectMapper());		
+		adapter = JMSMessageListenerServiceAdapter.createAdapter(getService(), getConnectionFactory(), getBodyMapper(), getAcceptedObjectMappers());		
+		adapter.setMetrics(getMetrics());
+		adapter.setCompression(getCompression());
+		adapter.setChunking(getChunking());
+		adapter.setDuplicateDetector(getDuplicateDetector());
 	}
 
 	protected abstract T getService();
@@ -43,6 +47,45 @@ public abstract class JMSAbstractMessageListener<T> implements MessageListener {
 		return OBJECT_MAPPER;
 	}
 
+	/**
+	 * The default mapper, {@link #getObjectMapper()} unless overridden by a binary mapper.
+	 */
+	protected JMSBodyMapper getBodyMapper() {
+		return getObjectMapper();
+	}
+
+	/**
+	 * Mappers for messages of other content types than the one of {@link #getBodyMapper()}.
+	 */
+	protected JMSBodyMapper[] getAcceptedObjectMappers() {
+		return new JMSBodyMapper[0];
+	}
+
+	protected JMSMetrics getMetrics() {
+		return JMSMetrics.NOOP;
+	}
+
+	/**
+	 * @return the compression of the replies, null by default
+	 */
+	protected JMSCompression getCompression() {
+		return null;
+	}
+
+	/**
+	 * @return the chunking of the replies, null by default
+	 */
+	protected JMSChunking getChunking() {
+		return null;
+	}
+
+	/**
+	 * @return the duplicate detector shared by all instances of the listener, null by default
+	 */
+	protected JMSDuplicateDetector getDuplicateDetector() {
+		return null;
+	}
+
 	@Override
 	public void onMessage(Message message) {
 		assert adapter != null : "init must be called before onMessage";
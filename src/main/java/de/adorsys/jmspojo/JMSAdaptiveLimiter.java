@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the calls in flight to a limit adapted to the observed round trip times (AIMD).
+ *
+ * The shortest round trip time of the recent calls is the baseline. A call taking more than
+ * twice the baseline, like one which timed out, is a sign of a congested listener and cuts the
+ * limit by a tenth. A faster call raises the limit by one, if at least half of the limit was in
+ * use. So the calls in flight follow what the listener can take, and callers fail fast instead
+ * of queueing up requests which would time out anyway.
+ *
+ * @author sso
+ */
+public class JMSAdaptiveLimiter implements JMSLimiter {
+
+	private static final double TOLERANCE = 2.0;
+	private static final double BACKOFF_RATIO = 0.9;
+	private static final int BASELINE_SAMPLES = 1000;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long maxWaitNanos;
+	private double limit;
+	private int inFlight;
+	private long baselineNanos = Long.MAX_VALUE;
+	private long nextBaselineNanos = Long.MAX_VALUE;
+	private int samples;
+
+	/**
+	 * @param maxWaitMs time a call waits for a permit, 0 fails at once
+	 */
+	public JMSAdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, long maxWaitMs) {
+		super();
+		if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+			throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+		}
+		this.limit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+	}
+
+	@Override
+	public synchronized void acquire() {
+		long deadline = System.nanoTime() + maxWaitNanos;
+		while (inFlight >= (int) limit) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new JMSServiceException("limit of " + (int) limit + " calls in flight is exceeded");
+			}
+			try {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JMSServiceException(e);
+			}
+		}
+		inFlight++;
+	}
+
+	@Override
+	public synchronized void release(long roundTripNanos) {
+		boolean saturated = inFlight * 2 >= limit;
+		inFlight--;
+		updateBaseline(roundTripNanos);
+		if (roundTripNanos > baselineNanos * TOLERANCE) {
+			limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+		} else if (saturated) {
+			limit = Math.min(maxLimit, limit + 1);
+		}
+		notifyAll();
+	}
+
+	/**
+	 * The time of a call without a round trip says nothing about the listener, it neither moves
+	 * the baseline nor the limit.
+	 */
+	@Override
+	public synchronized void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * The baseline is the shortest round trip of the previous and the current window of samples,
+	 * so it follows a listener which became slower for good.
+	 */
+	private void updateBaseline(long roundTripNanos) {
+		baselineNanos = Math.min(baselineNanos, roundTripNanos);
+		nextBaselineNanos = Math.min(nextBaselineNanos, roundTripNanos);
+		if (++samples >= BASELINE_SAMPLES) {
+			baselineNanos = nextBaselineNanos;
+			nextBaselineNanos = Long.MAX_VALUE;
+			samples = 0;
+		}
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Sends fire and forget messages in the background: calls only put their message into a
+ * bounded queue, which is drained by dedicated sender threads, each with its own connection,
+ * session and producer. So the calling thread neither serializes the message nor waits for the
+ * broker, and objects passed to a call must not be changed afterwards.
+ *
+ * What happens to a call while the queue is full is decided by the {@link FullQueuePolicy}. The
+ * outcome of every send, the broker acknowledgement or the failure, is reported to the
+ * {@link Callback}, failures without callback are printed. A failed sender thread reconnects
+ * with the next message.
+ *
+ * @author sso
+ */
+public class JMSAsyncSender implements AutoCloseable {
+
+	private static final long POLL_INTERVAL_MS = 100;
+
+	/**
+	 * What to do with a call while the queue is full.
+	 */
+	public enum FullQueuePolicy {
+		/** the calling thread waits until the queue has room */
+		BLOCK,
+		/** the call fails with a {@link JMSServiceException} */
+		FAIL,
+		/** the calling thread sends the message itself */
+		CALLER_RUNS
+	}
+
+	/**
+	 * Reports the outcome of a send, called by the thread which sent the message.
+	 */
+	public interface Callback {
+
+		/**
+		 * @param failure null if the broker acknowledged the message
+		 */
+		void completed(Destination destination, Object body, Exception failure);
+	}
+
+	private final ConnectionFactory connectionFactory;
+	private final BlockingQueue<QueuedMessage> queue;
+	private final FullQueuePolicy fullQueuePolicy;
+	private final List<Thread> senders = new ArrayList<>();
+	private volatile Callback callback;
+	private volatile boolean closed;
+
+	/**
+	 * @param threads number of sender threads
+	 * @param capacity maximum number of queued messages
+	 */
+	public JMSAsyncSender(ConnectionFactory connectionFactory, int threads, int capacity, FullQueuePolicy fullQueuePolicy) {
+		super();
+		if (threads < 1 || capacity < 1) {
+			throw new IllegalArgumentException("threads and capacity must be at least 1");
+		}
+		this.connectionFactory = connectionFactory;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.fullQueuePolicy = fullQueuePolicy;
+		for (int i = 0; i < threads; i++) {
+			Thread sender = new Thread(new Sender(), "jms-async-sender-" + i);
+			sender.setDaemon(true);
+			senders.add(sender);
+			sender.start();
+		}
+	}
+
+	public void setCallback(Callback callback) {
+		this.callback = callback;
+	}
+
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * Queues a message sent by <code>adapter</code>, with its operation, compression and chunking.
+	 *
+	 * @return completed once the broker acknowledged the message
+	 */
+	CompletableFuture<Void> send(JMSJavaFutureAdapter<?> adapter, Destination destination, Map<String, Object> messageProperties, Object data) {
+		if (closed) {
+			throw new JMSServiceException("async sender is closed");
+		}
+		Map<String, Object> properties = messageProperties != null ? new HashMap<>(messageProperties) : null;
+		QueuedMessage message = new QueuedMessage(adapter, destination, properties, data);
+		if (queue.offer(message)) {
+			return queued(message);
+		}
+		switch (fullQueuePolicy) {
+		case BLOCK:
+			try {
+				queue.put(message);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JMSServiceException(e);
+			}
+			return queued(message);
+		case CALLER_RUNS:
+			try {
+				adapter.send(destination, properties, data);
+				completed(message, null);
+			} catch (RuntimeException e) {
+				completed(message, e);
+			}
+			break;
+		default:
+			throw new JMSServiceException("async send queue is full, " + queue.size() + " messages are queued");
+		}
+		return message.sent;
+	}
+
+	/**
+	 * A message queued while the sender was closed may have missed the sender threads, it is
+	 * taken back unless {@link #close()} or a sender got it.
+	 */
+	private CompletableFuture<Void> queued(QueuedMessage message) {
+		if (closed && queue.remove(message)) {
+			throw new JMSServiceException("async sender is closed");
+		}
+		return message.sent;
+	}
+
+	/**
+	 * Sends the queued messages and stops the sender threads. Messages left in the queue by
+	 * then, queued by calls racing with the close, fail.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread sender : senders) {
+			try {
+				sender.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		QueuedMessage message;
+		while ((message = queue.poll()) != null) {
+			completed(message, new JMSServiceException("async sender is closed"));
+		}
+	}
+
+	private void completed(QueuedMessage message, Exception failure) {
+		if (failure == null) {
+			message.sent.complete(null);
+		} else {
+			message.sent.completeExceptionally(failure);
+		}
+		Callback messageCallback = callback;
+		if (messageCallback == null) {
+			if (failure != null) {
+				failure.printStackTrace();
+			}
+			return;
+		}
+		try {
+			messageCallback.completed(message.destination, message.body, failure);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private class Sender implements Runnable {
+
+		private Connection connection;
+		private Session session;
+		private MessageProducer producer;
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					QueuedMessage message = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+					if (message != null) {
+						send(message);
+					} else if (closed) {
+						// the queue is drained
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				disconnect();
+			}
+		}
+
+		private void send(QueuedMessage message) {
+			try {
+				message.adapter.send(getSession(), producer, message.destination, message.messageProperties, message.body, null);
+			} catch (JMSException | RuntimeException e) {
+				disconnect();
+				completed(message, e);
+				return;
+			}
+			completed(message, null);
+		}
+
+		private Session getSession() throws JMSException {
+			if (session == null) {
+				Connection c = connectionFactory.createConnection();
+				try {
+					Session s = c.createSession(false, Session.AUTO_ACKNOWLEDGE);
+					producer = s.createProducer(null);
+					session = s;
+					connection = c;
+				} catch (JMSException | RuntimeException e) {
+					JMSResourceHousekeeper.close(c);
+					throw e;
+				}
+			}
+			return session;
+		}
+
+		private void disconnect() {
+			JMSResourceHousekeeper.closeAll(connection, session, producer);
+			producer = null;
+			session = null;
+			connection = null;
+		}
+	}
+
+	private static class QueuedMessage {
+		private final JMSJavaFutureAdapter<?> adapter;
+		private final Destination destination;
+		private final Map<String, Object> messageProperties;
+		private final Object body;
+		private final CompletableFuture<Void> sent = new CompletableFuture<>();
+
+		QueuedMessage(JMSJavaFutureAdapter<?> adapter, Destination destination, Map<String, Object> messageProperties, Object body) {
+			this.adapter = adapter;
+			this.destination = destination;
+			this.messageProperties = messageProperties;
+			this.body = body;
+		}
+	}
+
+}
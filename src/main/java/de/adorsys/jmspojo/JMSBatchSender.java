@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Buffers fire and forget messages and sends them in batches within a transacted session,
+ * so the broker has to persist a batch once instead of every single message.
+ *
+ * A batch is committed when <code>maxBatchSize</code> messages are buffered, by the thread
+ * adding the last message, or <code>lingerMs</code> after its first message was added, by the
+ * housekeeper. A failed batch is rolled back and the next batch reconnects. The outcome of every
+ * message, committed or rolled back, completes the future returned by its send and is reported to
+ * the {@link JMSAsyncSender.Callback}. So a batch flushed by size never fails the call which happened
+ * to fill it, and a batch flushed after lingering is not lost without trace. Failures without
+ * callback are printed, an explicit {@link #flush()} throws them as well.
+ *
+ * @author sso
+ */
+public class JMSBatchSender implements AutoCloseable {
+
+	private final ConnectionFactory connectionFactory;
+	private final JMSBodyMapper objectMapper;
+	private final int maxBatchSize;
+	private final long lingerMs;
+	private final List<BatchedMessage> batch = new ArrayList<>();
+	private long batchSequence;
+	private JMSResourceHousekeeper.JMSScheduledTask lingerTask;
+	private Connection connection;
+	private Session session;
+	private MessageProducer producer;
+	private boolean closed;
+	private String operation;
+	private JMSCompression compression;
+	private JMSAsyncSender.Callback callback;
+
+	public JMSBatchSender(ConnectionFactory connectionFactory, JMSBodyMapper objectMapper, int maxBatchSize, long lingerMs) {
+		super();
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize must be at least 1");
+		}
+		this.connectionFactory = connectionFactory;
+		this.objectMapper = objectMapper;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerMs = lingerMs;
+	}
+
+	/**
+	 * @param operation stamped on every message as {@link JMSMessageReceiver#OPERATION_PROPERTY}
+	 */
+	synchronized void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	/**
+	 * @param compression compresses bodies above its threshold, null sends them as they are
+	 */
+	public synchronized void setCompression(JMSCompression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * @param callback told about every committed or rolled back message, by the thread which sent its batch
+	 */
+	public synchronized void setCallback(JMSAsyncSender.Callback callback) {
+		this.callback = callback;
+	}
+
+	/**
+	 * @return completed once the batch of the message is committed, failed if it was rolled back
+	 */
+	public synchronized CompletableFuture<Void> send(Destination destination, Map<String, Object> messageProperties, Object data) {
+		if (closed) {
+			throw new JMSServiceException("batch sender is closed");
+		}
+		Map<String, Object> properties = messageProperties != null ? new HashMap<>(messageProperties) : null;
+		BatchedMessage message = new BatchedMessage(destination, properties, data, serialize(data));
+		batch.add(message);
+		if (batch.size() >= maxBatchSize) {
+			sendReported(takeBatch());
+		} else if (batch.size() == 1) {
+			final long lingering = batchSequence;
+			lingerTask = JMSResourceHousekeeper.schedule(lingerMs, new Runnable() {
+
+				@Override
+				public void run() {
+					flushLingering(lingering);
+				}
+			});
+		}
+		return message.sent;
+	}
+
+	/**
+	 * Sends and commits all buffered messages.
+	 *
+	 * @throws JMSServiceException if the batch was rolled back, its messages are reported as failed as well
+	 */
+	public synchronized void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+		JMSServiceException failure = send(takeBatch());
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private List<BatchedMessage> takeBatch() {
+		List<BatchedMessage> messages = new ArrayList<>(batch);
+		batch.clear();
+		batchSequence++;
+		if (lingerTask != null) {
+			lingerTask.cancel();
+			lingerTask = null;
+		}
+		return messages;
+	}
+
+	/**
+	 * Sends a batch nobody waits for, a failure is only reported.
+	 */
+	private void sendReported(List<BatchedMessage> messages) {
+		JMSServiceException failure = send(messages);
+		if (failure != null && callback == null) {
+			failure.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the failure if the batch was rolled back, null if it was committed
+	 */
+	private JMSServiceException send(List<BatchedMessage> messages) {
+		try {
+			Session s = getSession();
+			for (BatchedMessage message : messages) {
+				Message jmsMessage = createMessage(s, message.serialized);
+				if (message.messageProperties != null) {
+					new JMSProperties(jmsMessage).setProperties(message.messageProperties);
+				}
+				if (operation != null) {
+					jmsMessage.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, operation);
+				}
+				producer.send(message.destination, jmsMessage);
+			}
+			s.commit();
+		} catch (JMSException | RuntimeException e) {
+			disconnect();
+			JMSServiceException failure = new JMSServiceException("batch of " + messages.size() + " messages was rolled back", e);
+			completed(messages, failure);
+			return failure;
+		}
+		completed(messages, null);
+		return null;
+	}
+
+	private void completed(List<BatchedMessage> messages, Exception failure) {
+		for (BatchedMessage message : messages) {
+			if (callback != null) {
+				try {
+					callback.completed(message.destination, message.data, failure);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			if (failure == null) {
+				message.sent.complete(null);
+			} else {
+				message.sent.completeExceptionally(failure);
+			}
+		}
+	}
+
+	public synchronized int getBufferedCount() {
+		return batch.size();
+	}
+
+	/**
+	 * Flushes the buffered messages and closes the batch session.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			closed = true;
+			disconnect();
+		}
+	}
+
+	private synchronized void flushLingering(long lingering) {
+		// the batch may have been flushed by size in the meantime
+		if (lingering != batchSequence || batch.isEmpty()) {
+			return;
+		}
+		sendReported(takeBatch());
+	}
+
+	/**
+	 * Calls are serialized right away, later changes of the sent objects must not affect the batch.
+	 */
+	private Object serialize(Object data) {
+		return JMSMessageBody.serialize(objectMapper, data);
+	}
+
+	private Message createMessage(Session s, Object body) throws JMSException {
+		return JMSMessageBody.createSerializedMessage(s, objectMapper, body, compression);
+	}
+
+	private Session getSession() throws JMSException {
+		if (session == null) {
+			Connection c = connectionFactory.createConnection();
+			try {
+				Session s = c.createSession(true, Session.SESSION_TRANSACTED);
+				producer = s.createProducer(null);
+				session = s;
+				connection = c;
+			} catch (JMSException | RuntimeException e) {
+				JMSResourceHousekeeper.close(c);
+				throw e;
+			}
+		}
+		return session;
+	}
+
+	private void disconnect() {
+		JMSResourceHousekeeper.closeAll(connection, session, producer);
+		producer = null;
+		session = null;
+		connection = null;
+	}
+
+	private static class BatchedMessage {
+		private final Destination destination;
+		private final Map<String, Object> messageProperties;
+		private final Object data;
+		private final Object serialized;
+		private final CompletableFuture<Void> sent = new CompletableFuture<>();
+
+		BatchedMessage(Destination destination, Map<String, Object> messageProperties, Object data, Object serialized) {
+			this.destination = destination;
+			this.messageProperties = messageProperties;
+			this.data = data;
+			this.serialized = serialized;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link JMSBodyMapper} writing bytes. Messages are sent as {@link javax.jms.BytesMessage}
+ * whose body is written and read by the mapper directly, without an intermediate String.
+ */
+public interface JMSBinaryObjectMapper extends JMSBodyMapper {
+
+	void serialize(Object object, OutputStream out);
+
+	<T> T deserialize(InputStream in, Class<T> type);
+
+	@SuppressWarnings("unchecked")
+	default <T> T deserialize(InputStream in, Type type) {
+		if (!(type instanceof Class)) {
+			throw new UnsupportedOperationException(getClass().getName() + " does not support generic type " + type);
+		}
+		return deserialize(in, (Class<T>) type);
+	}
+
+}
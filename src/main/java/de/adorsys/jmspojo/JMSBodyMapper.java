@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.reflect.Type;
+
+/**
+ * Maps message bodies to objects and back. A mapper is either a {@link JMSObjectMapper},
+ * writing text, or a {@link JMSBinaryObjectMapper}, writing bytes; mappers implementing both
+ * are used as binary mappers.
+ */
+public interface JMSBodyMapper {
+
+	/**
+	 * Message property carrying the {@link #getContentType()} of the message body.
+	 */
+	String CONTENT_TYPE_PROPERTY = "CONTENT_TYPE";
+
+	/**
+	 * The content type sent with every message, listeners pick the mapper of a message by it.
+	 * Null by default, messages without content type are read by the default mapper of a listener.
+	 */
+	default String getContentType() {
+		return null;
+	}
+
+	/**
+	 * Returns the mapper for the bodies of one service or receiver method, called once when a proxy
+	 * or listener adapter is created. Mappers resolving something per type, like the readers and
+	 * writers of the Jackson mappers, resolve it here instead of per message.
+	 *
+	 * @param readType the type of the bodies read, null if none are read
+	 * @param writeType the declared type of the bodies written, null if none are written
+	 */
+	default JMSBodyMapper bind(Type readType, Type writeType) {
+		return this;
+	}
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the replies of an idempotent request/reply method: a call equal to a previous one,
+ * with the same destination, headers and serialized body, is answered by the reply of that call
+ * for <code>ttlMs</code> without a request. At most <code>maxEntries</code> replies are kept, the
+ * least recently used one is evicted first. Callers share the cached reply object, so it must
+ * not be changed. On an interface it applies to all its methods returning a future.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface JMSCached {
+
+	long ttlMs() default 60000;
+
+	int maxEntries() default 1000;
+
+}
@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+import de.adorsys.jmspojo.JMSMetrics.Phase;
+
+/**
+ * Splits bodies larger than a chunk size into a group of {@link BytesMessage}s, so very large
+ * payloads neither hit the frame size limit of the broker nor have to be held by it as one message.
+ *
+ * The chunks of a body share a <code>JMSXGroupID</code>, which also makes the broker deliver them
+ * to one consumer, are numbered by <code>JMSXGroupSeq</code> and carry the
+ * {@link #CHUNK_COUNT_PROPERTY}. Every chunk carries the properties of the whole message. Receivers
+ * reassemble the chunks as they arrive: bodies of Jackson mappers with an asynchronous parser are
+ * tokenized chunk by chunk, without joining the chunks into one array; other bodies are kept as
+ * chunks and read as one stream once the last chunk arrived. Groups not completed within
+ * {@value #ASSEMBLY_TIMEOUT_MS} ms are dropped.
+ *
+ * Chunking bounds the size of a message, not the memory of the sender or the receiver. The sender
+ * serializes the whole body into one buffer, and compresses it into another, before it splits it.
+ * The receiver holds the whole body until its last chunk arrived, as the buffered tokens of the
+ * document or as the chunk arrays, and deserializes it at once; the deserialized object comes on
+ * top. The peak memory of both sides therefore grows with the body size.
+ *
+ * @author sso
+ */
+public class JMSChunking {
+
+	/**
+	 * Message property carrying the number of chunks of a chunked body.
+	 */
+	public static final String CHUNK_COUNT_PROPERTY = "CHUNK_COUNT";
+
+	static final String GROUP_ID_PROPERTY = "JMSXGroupID";
+	static final String GROUP_SEQ_PROPERTY = "JMSXGroupSeq";
+
+	private static final long ASSEMBLY_TIMEOUT_MS = 60000;
+	private static final ConcurrentMap<String, Assembly> ASSEMBLIES = new ConcurrentHashMap<>();
+
+	private final int chunkSize;
+
+	/**
+	 * @param chunkSize maximum body size of a message in bytes, larger bodies are sent in chunks of this size
+	 */
+	public JMSChunking(int chunkSize) {
+		super();
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be at least 1");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Sends a message of a session.
+	 */
+	interface MessageSender {
+		void send(Destination destination, Message message) throws JMSException;
+	}
+
+	/**
+	 * Sets the properties, correlation id and reply destination of a message.
+	 */
+	interface MessageDecorator {
+		void decorate(Message message) throws JMSException;
+	}
+
+	/**
+	 * Serializes the body and sends it as one message or, exceeding the chunk size, as a group of chunks.
+	 *
+	 * @param compression compresses bodies above its threshold before they are split, may be null
+	 * @return the last message sent
+	 */
+	Message send(Session session, JMSBodyMapper objectMapper, Object data, JMSCompression compression,
+			MessageDecorator decorator, MessageSender sender, Destination destination, JMSMethodMetrics metrics) throws JMSException {
+		long start = System.nanoTime();
+		byte[] body;
+		int length;
+		boolean binary = JMSMessageBody.isBinary(objectMapper);
+		if (data == null && !binary) {
+			Message message = JMSMessageBody.createSerializedMessage(session, objectMapper, null, compression);
+			metrics.record(Phase.SERIALIZE, System.nanoTime() - start);
+			return sendMessage(message, decorator, sender, destination, metrics);
+		}
+		JMSCompression.Codec codec = JMSCompression.borrow();
+		try {
+			// text is written as UTF-8, without a String in between for mappers encoding while serializing
+			JMSMessageBody.write(objectMapper, data, codec.body);
+			body = codec.body.data;
+			length = codec.body.size;
+			boolean compressed = compression != null && compression.isCompressing(length);
+			if (!binary && !compressed && length <= chunkSize) {
+				// text fitting into one message is sent as text
+				Message message = JMSMessageBody.createSerializedMessage(session, objectMapper, new String(body, 0, length, StandardCharsets.UTF_8), null);
+				metrics.record(Phase.SERIALIZE, System.nanoTime() - start);
+				return sendMessage(message, decorator, sender, destination, metrics);
+			}
+			if (compressed) {
+				compression.compress(body, length, codec);
+				body = codec.compressed.data;
+				length = codec.compressed.size;
+			}
+			metrics.record(Phase.SERIALIZE, System.nanoTime() - start);
+			if (length <= chunkSize) {
+				return sendMessage(createChunk(session, objectMapper, body, 0, length, compressed), decorator, sender, destination, metrics);
+			}
+			String groupId = UUID.randomUUID().toString();
+			int count = (length + chunkSize - 1) / chunkSize;
+			Message chunk = null;
+			for (int i = 0; i < count; i++) {
+				int offset = i * chunkSize;
+				chunk = createChunk(session, objectMapper, body, offset, Math.min(chunkSize, length - offset), compressed);
+				chunk.setStringProperty(GROUP_ID_PROPERTY, groupId);
+				chunk.setIntProperty(GROUP_SEQ_PROPERTY, i + 1);
+				chunk.setIntProperty(CHUNK_COUNT_PROPERTY, count);
+				sendMessage(chunk, decorator, sender, destination, metrics);
+			}
+			return chunk;
+		} finally {
+			JMSCompression.release(codec);
+		}
+	}
+
+	private static BytesMessage createChunk(Session session, JMSBodyMapper objectMapper, byte[] body, int offset, int length, boolean compressed) throws JMSException {
+		BytesMessage message = session.createBytesMessage();
+		message.writeBytes(body, offset, length);
+		JMSMessageBody.setContentType(message, objectMapper);
+		if (compressed) {
+			message.setStringProperty(JMSCompression.CONTENT_ENCODING_PROPERTY, JMSCompression.DEFLATE);
+		}
+		return message;
+	}
+
+	private static Message sendMessage(Message message, MessageDecorator decorator, MessageSender sender, Destination destination, JMSMethodMetrics metrics) throws JMSException {
+		decorator.decorate(message);
+		long sendStart = System.nanoTime();
+		sender.send(destination, message);
+		metrics.record(Phase.SEND, System.nanoTime() - sendStart);
+		return message;
+	}
+
+	static boolean isChunk(Message message) throws JMSException {
+		return message.propertyExists(CHUNK_COUNT_PROPERTY);
+	}
+
+	/**
+	 * @return true if the message is the last chunk of its group or no chunk at all
+	 */
+	static boolean isLastChunk(Message message) throws JMSException {
+		return !isChunk(message) || message.getIntProperty(GROUP_SEQ_PROPERTY) == message.getIntProperty(CHUNK_COUNT_PROPERTY);
+	}
+
+	/**
+	 * Drops the incomplete body of the group of a chunk which is not assembled.
+	 */
+	static void discard(Message chunk) throws JMSException {
+		Assembly assembly = ASSEMBLIES.remove(chunk.getStringProperty(GROUP_ID_PROPERTY));
+		if (assembly != null) {
+			assembly.release();
+		}
+	}
+
+	/**
+	 * Adds a chunk to the body of its group.
+	 *
+	 * @param type the type of the body, null if it is not read
+	 * @return the assembled body once the last chunk was added, otherwise null
+	 */
+	static Assembly assemble(Message chunk, JMSBodyMapper objectMapper, Type type) throws JMSException {
+		if (!(chunk instanceof BytesMessage)) {
+			throw new JMSServiceException("chunk " + chunk.getJMSMessageID() + " is no bytes message");
+		}
+		String groupId = chunk.getStringProperty(GROUP_ID_PROPERTY);
+		int sequence = chunk.getIntProperty(GROUP_SEQ_PROPERTY);
+		int count = chunk.getIntProperty(CHUNK_COUNT_PROPERTY);
+		Assembly assembly = sequence == 1 ? new Assembly(groupId, objectMapper, type, isCompressed(chunk)) : ASSEMBLIES.remove(groupId);
+		if (assembly == null) {
+			throw new JMSServiceException("chunk " + sequence + " of unknown or expired group " + groupId);
+		}
+		try {
+			if (assembly.received + 1 != sequence) {
+				throw new JMSServiceException("chunk " + sequence + " of group " + groupId + " is out of order");
+			}
+			assembly.add((BytesMessage) chunk);
+			if (sequence < count) {
+				ASSEMBLIES.put(groupId, assembly);
+				assembly.scheduleExpiry(getExpiryDelay(chunk));
+				return null;
+			}
+			assembly.complete();
+			return assembly;
+		} catch (JMSException | RuntimeException e) {
+			assembly.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * An incomplete group is released after a minute, or once nobody waits for its reply anymore.
+	 */
+	private static long getExpiryDelay(Message chunk) throws JMSException {
+		if (!chunk.propertyExists(JMSMessageReceiver.DEADLINE_PROPERTY)) {
+			return ASSEMBLY_TIMEOUT_MS;
+		}
+		long untilDeadline = chunk.getLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY) - System.currentTimeMillis();
+		return Math.max(0, Math.min(ASSEMBLY_TIMEOUT_MS, untilDeadline));
+	}
+
+	/**
+	 * @return the number of incomplete chunk groups
+	 */
+	static int getAssemblyCount() {
+		return ASSEMBLIES.size();
+	}
+
+	private static boolean isCompressed(Message message) throws JMSException {
+		String encoding = message.getStringProperty(JMSCompression.CONTENT_ENCODING_PROPERTY);
+		if (encoding != null && !JMSCompression.DEFLATE.equals(encoding)) {
+			throw new JMSServiceException("unsupported content encoding " + encoding + " of message " + message.getJMSMessageID());
+		}
+		return encoding != null;
+	}
+
+	private static JMSJacksonTypeCache getTypeCache(JMSBodyMapper objectMapper) {
+		if (objectMapper instanceof JMSJacksonMapper) {
+			return ((JMSJacksonMapper) objectMapper).getTypeCache();
+		}
+		if (objectMapper instanceof JMSJacksonBinaryMapper) {
+			return ((JMSJacksonBinaryMapper) objectMapper).getTypeCache();
+		}
+		return null;
+	}
+
+	/**
+	 * The body of a chunk group, tokenized or kept while its chunks arrive. Either way it holds the
+	 * whole body until the group is complete.
+	 */
+	static final class Assembly {
+
+		private final String groupId;
+		private final JMSBodyMapper objectMapper;
+		private final Type type;
+		private final boolean compressed;
+		private final JMSJacksonTypeCache typeCache;
+		private final List<byte[]> chunks = new ArrayList<>();
+		private JsonParser parser;
+		private TokenBuffer tokens;
+		private JMSCompression.Codec codec;
+		private byte[] buffer;
+		private JMSResourceHousekeeper.JMSScheduledTask expiry;
+		private int received;
+
+		Assembly(String groupId, JMSBodyMapper objectMapper, Type type, boolean compressed) {
+			this.groupId = groupId;
+			this.objectMapper = objectMapper;
+			this.type = type;
+			this.compressed = compressed;
+			JMSJacksonTypeCache cache = type != null && type != String.class ? getTypeCache(objectMapper) : null;
+			// raw strings are no JSON, formats without asynchronous parser are read at the end
+			this.typeCache = cache != null && cache.getObjectMapper().getFactory().canParseAsync() ? cache : null;
+		}
+
+		void add(BytesMessage chunk) throws JMSException {
+			received++;
+			if (type == null) {
+				// nobody reads the body
+				return;
+			}
+			chunk.reset();
+			int length = (int) chunk.getBodyLength();
+			if (typeCache == null) {
+				byte[] bytes = new byte[length];
+				chunk.readBytes(bytes);
+				chunks.add(bytes);
+				return;
+			}
+			if (buffer == null || buffer.length < length) {
+				buffer = new byte[length];
+			}
+			int read = Math.max(chunk.readBytes(buffer, length), 0);
+			try {
+				if (compressed) {
+					inflate(buffer, read);
+				} else {
+					parse(buffer, 0, read);
+				}
+			} catch (IOException | DataFormatException e) {
+				throw new JMSServiceException("chunk " + received + " of group " + groupId + " is not readable", e);
+			}
+		}
+
+		private void inflate(byte[] input, int length) throws IOException, DataFormatException {
+			if (codec == null) {
+				codec = JMSCompression.borrow();
+			}
+			Inflater inflater = codec.getInflater();
+			inflater.setInput(input, 0, length);
+			JMSCompression.Buffer out = codec.body;
+			out.ensureCapacity(length * 4);
+			int inflated;
+			while ((inflated = inflater.inflate(out.data, 0, out.data.length)) > 0) {
+				parse(out.data, 0, inflated);
+			}
+		}
+
+		private void parse(byte[] input, int offset, int length) throws IOException {
+			if (parser == null) {
+				JsonFactory factory = typeCache.getObjectMapper().getFactory();
+				parser = factory.createNonBlockingByteArrayParser();
+				tokens = new TokenBuffer(parser);
+			}
+			((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(input, offset, offset + length);
+			drain();
+		}
+
+		private void drain() throws IOException {
+			JsonToken token;
+			while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+				tokens.copyCurrentEvent(parser);
+			}
+		}
+
+		void complete() {
+			if (expiry != null) {
+				expiry.cancel();
+			}
+			if (parser != null) {
+				try {
+					((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+					drain();
+					parser.close();
+				} catch (IOException e) {
+					release();
+					throw new JMSServiceException("chunk group " + groupId + " is not readable", e);
+				}
+			}
+			releaseCodec();
+		}
+
+		void scheduleExpiry(long delayMs) {
+			if (expiry == null) {
+				expiry = JMSResourceHousekeeper.schedule(delayMs, () -> {
+					if (ASSEMBLIES.remove(groupId, this)) {
+						release();
+					}
+				});
+			}
+		}
+
+		/**
+		 * @return the deserialized body, null if the type is null
+		 */
+		@SuppressWarnings("unchecked")
+		<T> T read() {
+			if (type == null) {
+				return null;
+			}
+			try {
+				if (tokens != null) {
+					return typeCache.reader(type).readValue(tokens.asParser());
+				}
+				InputStream in = new SequenceInputStream(Collections.enumeration(toStreams()));
+				if (compressed) {
+					in = new InflaterInputStream(in);
+				}
+				return JMSMessageBody.read(objectMapper, in, type);
+			} catch (IOException e) {
+				throw new JMSServiceException("chunk group " + groupId + " is not readable", e);
+			}
+		}
+
+		private List<InputStream> toStreams() {
+			List<InputStream> streams = new ArrayList<>(chunks.size());
+			for (byte[] chunk : chunks) {
+				streams.add(new ByteArrayInputStream(chunk));
+			}
+			return streams;
+		}
+
+		void release() {
+			if (expiry != null) {
+				expiry.cancel();
+			}
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException e) {
+				}
+			}
+			releaseCodec();
+			chunks.clear();
+		}
+
+		private void releaseCodec() {
+			if (codec != null) {
+				JMSCompression.release(codec);
+				codec = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A future completed from the start, it holds no JMS resources.
+ */
+class JMSCompletedFuture<T> extends JMSFuture<T> {
+
+	private final T value;
+
+	JMSCompletedFuture(T value) {
+		super();
+		this.value = value;
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return false;
+	}
+
+	@Override
+	public boolean isDone() {
+		return true;
+	}
+
+	@Override
+	public T get() {
+		return value;
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) {
+		return value;
+	}
+
+	@Override
+	boolean onDone(Runnable callback) {
+		callback.run();
+		return true;
+	}
+
+	@Override
+	public CompletableFuture<T> toCompletableFuture() {
+		return CompletableFuture.completedFuture(value);
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Deflate compression of message bodies whose serialized size reaches a threshold.
+ *
+ * Compressed bodies are sent as {@link BytesMessage} marked with the {@link #CONTENT_ENCODING_PROPERTY},
+ * every reader decompresses them, whether it compresses itself or not. Deflaters, inflaters and
+ * their buffers are pooled, up to {@value #MAX_POOLED_BYTES} bytes of buffers in all; larger
+ * buffers and codecs beyond are dropped after use.
+ *
+ * Bodies are serialized into a pooled buffer and compressed from there. Text mappers write UTF-8
+ * through {@link JMSObjectMapper#serializeUtf8}, which {@link JMSJacksonMapper} encodes while
+ * serializing; other text mappers create the String and its UTF-8 copy, and all of them create the
+ * String of a text body below the threshold. Decompressed text is parsed through
+ * {@link JMSObjectMapper#deserializeUtf8} likewise.
+ *
+ * @author sso
+ */
+public class JMSCompression {
+
+	/**
+	 * Message property carrying the codec of a compressed body.
+	 */
+	public static final String CONTENT_ENCODING_PROPERTY = "CONTENT_ENCODING";
+
+	public static final String DEFLATE = "deflate";
+
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+	// buffers grown beyond are dropped instead of being pooled
+	private static final int MAX_POOLED_BUFFER = 256 * 1024;
+	// the buffers of all pooled codecs together
+	private static final int MAX_POOLED_BYTES = 4 * 1024 * 1024;
+	private static final ArrayBlockingQueue<Codec> CODECS = new ArrayBlockingQueue<>(POOL_SIZE);
+	private static final AtomicLong POOLED_BYTES = new AtomicLong();
+
+	private final int threshold;
+	private final int level;
+
+	/**
+	 * @param threshold minimum size of a serialized body to be compressed in bytes, text in its UTF-8
+	 * encoding, or in chars where it was serialized to a String before like in batches
+	 * @param level the deflate level, {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+	 */
+	public JMSCompression(int threshold, int level) {
+		super();
+		if (threshold < 0) {
+			throw new IllegalArgumentException("threshold must not be negative");
+		}
+		this.threshold = threshold;
+		this.level = level;
+	}
+
+	/**
+	 * Compresses with {@link Deflater#BEST_SPEED}, which already shrinks JSON several times.
+	 */
+	public JMSCompression(int threshold) {
+		this(threshold, Deflater.BEST_SPEED);
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	boolean isCompressing(int size) {
+		return size >= threshold;
+	}
+
+	/**
+	 * Writes the compressed bytes into the message and marks its encoding.
+	 */
+	void write(byte[] body, int length, BytesMessage message) throws JMSException {
+		Codec codec = borrow();
+		try {
+			compress(body, length, codec);
+			message.writeBytes(codec.compressed.data, 0, codec.compressed.size);
+			message.setStringProperty(CONTENT_ENCODING_PROPERTY, DEFLATE);
+		} finally {
+			release(codec);
+		}
+	}
+
+	/**
+	 * Compresses the bytes into the compressed buffer of the codec.
+	 */
+	void compress(byte[] body, int length, Codec codec) {
+		Deflater deflater = codec.getDeflater();
+		deflater.setLevel(level);
+		deflater.setInput(body, 0, length);
+		deflater.finish();
+		Buffer out = codec.compressed;
+		while (!deflater.finished()) {
+			out.ensureCapacity(out.size + Math.max(length / 4, 64));
+			out.size += deflater.deflate(out.data, out.size, out.data.length - out.size);
+		}
+	}
+
+	/**
+	 * @return the decompressed body of a message marked with {@link #CONTENT_ENCODING_PROPERTY}, to be
+	 * handed back with {@link #release(Codec)} once it was read
+	 */
+	static Codec read(BytesMessage message) throws JMSException {
+		String encoding = message.getStringProperty(CONTENT_ENCODING_PROPERTY);
+		if (!DEFLATE.equals(encoding)) {
+			throw new JMSServiceException("unsupported content encoding " + encoding + " of message " + message.getJMSMessageID());
+		}
+		Codec codec = borrow();
+		try {
+			Buffer in = codec.compressed;
+			in.ensureCapacity((int) message.getBodyLength());
+			in.size = message.readBytes(in.data, (int) message.getBodyLength());
+			Inflater inflater = codec.getInflater();
+			inflater.setInput(in.data, 0, Math.max(in.size, 0));
+			Buffer out = codec.body;
+			while (!inflater.finished()) {
+				out.ensureCapacity(out.size + Math.max(in.size * 4, 256));
+				int inflated = inflater.inflate(out.data, out.size, out.data.length - out.size);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new JMSServiceException("truncated compressed body of message " + message.getJMSMessageID());
+				}
+				out.size += inflated;
+			}
+			return codec;
+		} catch (DataFormatException e) {
+			release(codec);
+			throw new JMSServiceException("corrupt compressed body of message " + message.getJMSMessageID(), e);
+		} catch (JMSException | RuntimeException e) {
+			release(codec);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return a pooled codec whose body buffer may be used to serialize a message before it is compressed
+	 */
+	static Codec borrow() {
+		Codec codec = CODECS.poll();
+		if (codec == null) {
+			return new Codec();
+		}
+		POOLED_BYTES.addAndGet(-codec.getRetainedBytes());
+		return codec;
+	}
+
+	static void release(Codec codec) {
+		codec.reset();
+		if (codec.isPoolable()) {
+			int retained = codec.getRetainedBytes();
+			if (POOLED_BYTES.addAndGet(retained) <= MAX_POOLED_BYTES && CODECS.offer(codec)) {
+				return;
+			}
+			POOLED_BYTES.addAndGet(-retained);
+		}
+		codec.end();
+	}
+
+	/**
+	 * @return the bytes of the buffers kept by the pooled codecs
+	 */
+	static long getPooledBytes() {
+		return POOLED_BYTES.get();
+	}
+
+	/**
+	 * A deflater and an inflater with the buffers of one message.
+	 */
+	static final class Codec {
+
+		final Buffer body = new Buffer();
+		final Buffer compressed = new Buffer();
+		private Deflater deflater;
+		private Inflater inflater;
+
+		Deflater getDeflater() {
+			if (deflater == null) {
+				deflater = new Deflater(Deflater.BEST_SPEED);
+			}
+			return deflater;
+		}
+
+		Inflater getInflater() {
+			if (inflater == null) {
+				inflater = new Inflater();
+			}
+			return inflater;
+		}
+
+		void reset() {
+			body.size = 0;
+			compressed.size = 0;
+			if (deflater != null) {
+				deflater.reset();
+			}
+			if (inflater != null) {
+				inflater.reset();
+			}
+		}
+
+		boolean isPoolable() {
+			return body.data.length <= MAX_POOLED_BUFFER && compressed.data.length <= MAX_POOLED_BUFFER;
+		}
+
+		int getRetainedBytes() {
+			return body.data.length + compressed.data.length;
+		}
+
+		void end() {
+			// releases the native memory right away instead of on finalization
+			if (deflater != null) {
+				deflater.end();
+			}
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * A growable byte array written by serializers, unlike ByteArrayOutputStream its array is accessible.
+	 */
+	static final class Buffer extends OutputStream {
+
+		byte[] data = new byte[1024];
+		int size;
+
+		void ensureCapacity(int capacity) {
+			if (capacity > data.length) {
+				data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+			}
+		}
+
+		@Override
+		public void write(int b) {
+			ensureCapacity(size + 1);
+			data[size++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(size + len);
+			System.arraycopy(b, off, data, size, len);
+			size += len;
+		}
+	}
+
+}
@@ -0,0 +1,432 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+
+/**
+ * Bounded pool of JMS connections, sessions and per destination producers.
+ *
+ * Sessions are handed out exclusively by {@link #borrow()} and must be given back
+ * with {@link #release(JMSPooledSession)} or, if they failed, with
+ * {@link #invalidate(JMSPooledSession)}. Sessions are spread over at most
+ * <code>maxConnections</code> connections, sessions idle for longer than
+ * <code>idleTimeout</code> are closed and connections without sessions are closed
+ * as well. A connection reporting an error to its {@link ExceptionListener} is
+ * marked broken and none of its sessions is handed out again. Where the container
+ * forbids exception listeners, as Java EE containers do, the connection of an idle
+ * session is checked when the session is borrowed.
+ *
+ * @author sso
+ */
+public class JMSConnectionPool implements AutoCloseable {
+
+	/**
+	 * Time in ms {@link #borrow()} waits for a free session unless given explicitly.
+	 */
+	public static final long DEFAULT_BORROW_TIMEOUT = 30000;
+
+	private static final int MAX_CACHED_PRODUCERS = 32;
+	private static final long TEMPORARY_DESTINATION_WAIT_MS = 200;
+
+	private final ConnectionFactory connectionFactory;
+	private final int maxConnections;
+	private final long idleTimeout;
+	private final long borrowTimeout;
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<JMSPooledSession> idleSessions = new LinkedBlockingDeque<>();
+	private final List<PooledConnection> connections = new ArrayList<>();
+	private final boolean listening;
+	private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+	private volatile boolean closed;
+
+	/**
+	 * @param connectionFactory the factory used to create the pooled connections
+	 * @param maxConnections maximum number of open connections
+	 * @param maxSessions maximum number of sessions, borrowed and idle
+	 * @param idleTimeout time in ms an idle session is kept, 0 closes sessions on release
+	 * @param borrowTimeout time in ms {@link #borrow()} waits for a free session
+	 */
+	public JMSConnectionPool(ConnectionFactory connectionFactory, int maxConnections, int maxSessions, long idleTimeout, long borrowTimeout) {
+		this(connectionFactory, maxConnections, maxSessions, idleTimeout, borrowTimeout, true);
+	}
+
+	/**
+	 * @param listening false to leave the exception listener of the connections alone
+	 */
+	private JMSConnectionPool(ConnectionFactory connectionFactory, int maxConnections, int maxSessions, long idleTimeout, long borrowTimeout,
+			boolean listening) {
+		super();
+		if (maxConnections < 1 || maxSessions < 1) {
+			throw new IllegalArgumentException("maxConnections and maxSessions must be at least 1");
+		}
+		this.connectionFactory = connectionFactory;
+		this.maxConnections = maxConnections;
+		this.idleTimeout = idleTimeout;
+		this.borrowTimeout = borrowTimeout;
+		this.listening = listening;
+		this.permits = new Semaphore(maxSessions, true);
+		if (idleTimeout > 0) {
+			armEviction();
+		}
+	}
+
+	/**
+	 * Creates a pool whose {@link #borrow()} waits up to {@link #DEFAULT_BORROW_TIMEOUT} ms for a free session.
+	 */
+	public JMSConnectionPool(ConnectionFactory connectionFactory, int maxConnections, int maxSessions, long idleTimeout) {
+		this(connectionFactory, maxConnections, maxSessions, idleTimeout, DEFAULT_BORROW_TIMEOUT);
+	}
+
+	/**
+	 * Creates a pool that keeps nothing: every borrowed session gets its own new
+	 * connection which is closed again on release. No exception listener is set on
+	 * these connections, so they can be used in Java EE containers.
+	 */
+	public static JMSConnectionPool unpooled(ConnectionFactory connectionFactory) {
+		return new JMSConnectionPool(connectionFactory, Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 0, false);
+	}
+
+	public JMSPooledSession borrow() {
+		if (closed) {
+			throw new JMSServiceException("connection pool is closed");
+		}
+		try {
+			if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new JMSServiceException("no pooled jms session available within " + borrowTimeout + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSServiceException(e);
+		}
+		try {
+			JMSPooledSession session;
+			while ((session = idleSessions.pollFirst()) != null) {
+				if (session.isValid() && session.isAlive()) {
+					return session;
+				}
+				destroy(session);
+			}
+			return createSession();
+		} catch (JMSException | RuntimeException e) {
+			permits.release();
+			throw e instanceof JMSServiceException ? (JMSServiceException) e : new JMSServiceException(e);
+		}
+	}
+
+	public void release(JMSPooledSession session) {
+		if (session == null) {
+			return;
+		}
+		if (closed || idleTimeout <= 0 || !session.isValid()) {
+			destroy(session);
+		} else {
+			session.lastUsed = System.currentTimeMillis();
+			idleSessions.offerFirst(session);
+			if (!evictionScheduled.get()) {
+				armEviction();
+			}
+		}
+		permits.release();
+	}
+
+	public void invalidate(JMSPooledSession session) {
+		if (session == null) {
+			return;
+		}
+		destroy(session);
+		permits.release();
+	}
+
+	/**
+	 * Closes idle sessions which have not been used for <code>idleTimeout</code> ms.
+	 * Called periodically, but may also be called explicitly.
+	 */
+	public void evictIdle() {
+		long expired = System.currentTimeMillis() - idleTimeout;
+		JMSPooledSession session;
+		while ((session = idleSessions.peekLast()) != null && (session.lastUsed < expired || !session.isValid())) {
+			if (idleSessions.removeLastOccurrence(session)) {
+				destroy(session);
+			}
+		}
+	}
+
+	ConnectionFactory getConnectionFactory() {
+		return connectionFactory;
+	}
+
+	public int getIdleSessionCount() {
+		return idleSessions.size();
+	}
+
+	public int getConnectionCount() {
+		synchronized (connections) {
+			return connections.size();
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		JMSPooledSession session;
+		while ((session = idleSessions.pollFirst()) != null) {
+			destroy(session);
+		}
+	}
+
+	private void armEviction() {
+		if (evictionScheduled.compareAndSet(false, true)) {
+			scheduleEviction();
+		}
+	}
+
+	private void scheduleEviction() {
+		JMSResourceHousekeeper.schedule(idleTimeout, new Runnable() {
+
+			@Override
+			public void run() {
+				if (closed) {
+					return;
+				}
+				evictIdle();
+				scheduleEviction();
+			}
+		}, () -> {
+			// the housekeeper stopped, the next release arms the eviction again
+			evictionScheduled.set(false);
+		});
+	}
+
+	private JMSPooledSession createSession() throws JMSException {
+		PooledConnection connection = null;
+		synchronized (connections) {
+			for (PooledConnection candidate : connections) {
+				if (!candidate.broken && (connection == null || candidate.sessions < connection.sessions)) {
+					connection = candidate;
+				}
+			}
+			if (connection == null || (connection.sessions > 0 && connections.size() < maxConnections)) {
+				connection = new PooledConnection(connectionFactory.createConnection(), listening);
+				connections.add(connection);
+			}
+			connection.sessions++;
+		}
+		try {
+			return new JMSPooledSession(connection, connection.connection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+		} catch (JMSException | RuntimeException e) {
+			connection.broken = true;
+			releaseConnection(connection);
+			throw e;
+		}
+	}
+
+	private void destroy(JMSPooledSession session) {
+		session.closeProducers();
+		JMSResourceHousekeeper.close(session.getSession());
+		releaseConnection(session.connection);
+	}
+
+	private void releaseConnection(PooledConnection connection) {
+		synchronized (connections) {
+			connection.sessions--;
+			if (connection.sessions > 0) {
+				return;
+			}
+			connections.remove(connection);
+		}
+		JMSResourceHousekeeper.close(connection.connection);
+	}
+
+	private static class PooledConnection implements ExceptionListener {
+		private final Connection connection;
+		private volatile boolean broken;
+		private boolean validating;
+		private int sessions;
+
+		PooledConnection(Connection connection, boolean listening) throws JMSException {
+			this.connection = connection;
+			try {
+				if (listening) {
+					try {
+						connection.setExceptionListener(this);
+					} catch (JMSException | RuntimeException e) {
+						// Java EE containers forbid exception listeners
+						validating = true;
+					}
+				}
+				connection.start();
+			} catch (JMSException | RuntimeException e) {
+				JMSResourceHousekeeper.close(connection);
+				throw e;
+			}
+		}
+
+		@Override
+		public void onException(JMSException exception) {
+			broken = true;
+		}
+	}
+
+	/**
+	 * A session borrowed from a {@link JMSConnectionPool} together with its cached producers.
+	 * A pooled session must only be used by the thread which borrowed it.
+	 */
+	public static class JMSPooledSession {
+
+		private final PooledConnection connection;
+		private final Session session;
+		private final Map<Destination, MessageProducer> producers = new LinkedHashMap<Destination, MessageProducer>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Destination, MessageProducer> eldest) {
+				if (size() > MAX_CACHED_PRODUCERS) {
+					JMSResourceHousekeeper.close(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+		private MessageProducer anonymousProducer;
+		private volatile boolean broken;
+		private long lastUsed;
+
+		JMSPooledSession(PooledConnection connection, Session session) {
+			this.connection = connection;
+			this.session = session;
+		}
+
+		public Session getSession() {
+			return session;
+		}
+
+		public Connection getConnection() {
+			return connection.connection;
+		}
+
+		/**
+		 * Sends the message with a cached producer. Temporary destinations are
+		 * short living and share one anonymous producer instead of getting their own.
+		 */
+		public void send(Destination destination, Message message) throws JMSException {
+			send(destination, message, Message.DEFAULT_TIME_TO_LIVE);
+		}
+
+		/**
+		 * @param timeToLive time in ms after which the broker discards the message, 0 keeps it forever
+		 */
+		public void send(Destination destination, Message message, long timeToLive) throws JMSException {
+			try {
+				if (destination instanceof TemporaryQueue || destination instanceof TemporaryTopic) {
+					if (anonymousProducer == null) {
+						anonymousProducer = session.createProducer(null);
+					}
+					sendToTemporary(anonymousProducer, destination, message, timeToLive);
+				} else {
+					MessageProducer producer = producers.get(destination);
+					if (producer == null) {
+						producer = session.createProducer(destination);
+						producers.put(destination, producer);
+					}
+					producer.send(message, producer.getDeliveryMode(), producer.getPriority(), timeToLive);
+				}
+			} catch (JMSException | RuntimeException e) {
+				broken = true;
+				throw e;
+			}
+		}
+
+		/**
+		 * Sends a message with an anonymous producer to a temporary destination. A connection
+		 * learns of temporary destinations of other connections from advisory messages, until
+		 * they arrive it reports the destination as deleted. So a reply to a temporary queue
+		 * created just before is retried for a short while.
+		 */
+		static void sendToTemporary(MessageProducer producer, Destination destination, Message message, long timeToLive) throws JMSException {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEMPORARY_DESTINATION_WAIT_MS);
+			long waitMs = 1;
+			while (true) {
+				try {
+					producer.send(destination, message, producer.getDeliveryMode(), producer.getPriority(), timeToLive);
+					return;
+				} catch (InvalidDestinationException e) {
+					if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs) - deadline > 0) {
+						throw e;
+					}
+					try {
+						Thread.sleep(waitMs);
+					} catch (InterruptedException interrupted) {
+						Thread.currentThread().interrupt();
+						throw e;
+					}
+					waitMs *= 2;
+				}
+			}
+		}
+
+		boolean isValid() {
+			return !broken && !connection.broken;
+		}
+
+		/**
+		 * Checks the connection of a session if no exception listener reports its errors, a
+		 * failed connection refuses to answer.
+		 */
+		boolean isAlive() {
+			if (!connection.validating) {
+				return true;
+			}
+			try {
+				connection.connection.getClientID();
+				session.getTransacted();
+				return true;
+			} catch (JMSException | RuntimeException e) {
+				connection.broken = true;
+				return false;
+			}
+		}
+
+		void closeProducers() {
+			for (MessageProducer producer : producers.values()) {
+				JMSResourceHousekeeper.close(producer);
+			}
+			producers.clear();
+			JMSResourceHousekeeper.close(anonymousProducer);
+			anonymousProducer = null;
+		}
+	}
+
+}
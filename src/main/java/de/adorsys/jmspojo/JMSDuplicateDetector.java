@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Remembers the messages processed by a listener, so a redelivered message is not processed
+ * again but answered with the reply of its first delivery.
+ *
+ * Messages are identified by their <code>JMSMessageID</code> or by a business key property set by
+ * the sender. At most <code>maxEntries</code> messages are remembered, each for
+ * <code>windowMs</code> after it was received, the oldest ones are forgotten first. A message whose
+ * processing failed is forgotten, so its redelivery is processed again.
+ *
+ * A duplicate of a message still being processed is acknowledged and dropped, the first delivery
+ * replies. If the first delivery then fails, the message is lost unless it is delivered once
+ * more, as it is after the rollback of a transacted session.
+ *
+ * Lookups do not lock, the keys are kept in a concurrent map and their order in a concurrent
+ * queue, which one thread at a time trims. One detector must be shared by all listeners of a
+ * destination.
+ *
+ * @author sso
+ */
+public class JMSDuplicateDetector {
+
+	private final long windowNanos;
+	private final int maxEntries;
+	private final String keyProperty;
+	private final ConcurrentMap<String, Processed> processed = new ConcurrentHashMap<>();
+	// in the order of registration, entries replaced or failed since stay until they are trimmed
+	private final Queue<Processed> order = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger count = new AtomicInteger();
+	private final ReentrantLock evicting = new ReentrantLock();
+
+	/**
+	 * Identifies messages by their <code>JMSMessageID</code>.
+	 */
+	public JMSDuplicateDetector(int maxEntries, long windowMs) {
+		this(maxEntries, windowMs, null);
+	}
+
+	/**
+	 * @param keyProperty the message property holding the business key, messages without it are
+	 * identified by their <code>JMSMessageID</code>
+	 */
+	public JMSDuplicateDetector(int maxEntries, long windowMs, String keyProperty) {
+		super();
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+		this.maxEntries = maxEntries;
+		this.keyProperty = keyProperty;
+	}
+
+	/**
+	 * @return the key of the message, null if it has none
+	 */
+	String getKey(Message message) throws JMSException {
+		String key = keyProperty != null ? message.getStringProperty(keyProperty) : null;
+		return key != null ? key : message.getJMSMessageID();
+	}
+
+	/**
+	 * Registers a received message as being processed.
+	 *
+	 * @return null if the message is new, otherwise its first delivery
+	 */
+	Processed register(String key) {
+		long now = System.nanoTime();
+		Processed registered = new Processed(key, now);
+		while (true) {
+			Processed first = processed.putIfAbsent(key, registered);
+			if (first == null) {
+				count.incrementAndGet();
+				break;
+			}
+			if (!isExpired(first, now)) {
+				return first;
+			}
+			if (processed.replace(key, first, registered)) {
+				break;
+			}
+		}
+		order.add(registered);
+		evict(now);
+		return null;
+	}
+
+	/**
+	 * @param reply the reply to send to duplicates
+	 * @param replayable false if the reply cannot be sent again, like a stream
+	 */
+	void completed(String key, Object reply, boolean replayable) {
+		Processed first = processed.get(key);
+		if (first != null) {
+			first.reply = reply;
+			first.replayable = replayable;
+			first.completed = true;
+		}
+	}
+
+	void failed(String key) {
+		if (processed.remove(key) != null) {
+			count.decrementAndGet();
+		}
+	}
+
+	public int size() {
+		return count.get();
+	}
+
+	public void clear() {
+		for (String key : processed.keySet()) {
+			failed(key);
+		}
+	}
+
+	private boolean isExpired(Processed entry, long now) {
+		return now - entry.received > windowNanos;
+	}
+
+	/**
+	 * Forgets the expired and the eldest entries beyond <code>maxEntries</code>, skipped while
+	 * another thread does.
+	 */
+	private void evict(long now) {
+		if (!evicting.tryLock()) {
+			return;
+		}
+		try {
+			Processed eldest;
+			while ((eldest = order.peek()) != null && (count.get() > maxEntries || isExpired(eldest, now) || processed.get(eldest.key) != eldest)) {
+				order.poll();
+				if (processed.remove(eldest.key, eldest)) {
+					count.decrementAndGet();
+				}
+			}
+		} finally {
+			evicting.unlock();
+		}
+	}
+
+	/**
+	 * The first delivery of a message.
+	 */
+	static final class Processed {
+		private final String key;
+		private final long received;
+		private Object reply;
+		private boolean replayable;
+		// written last, publishes the reply
+		private volatile boolean completed;
+
+		Processed(String key, long received) {
+			this.key = key;
+			this.received = received;
+		}
+
+		Object getReply() {
+			return reply;
+		}
+
+		/**
+		 * @return true if the first delivery was processed and its reply can be sent again
+		 */
+		boolean isReplayable() {
+			return completed && replayable;
+		}
+	}
+
+}
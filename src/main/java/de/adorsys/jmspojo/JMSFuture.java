@@ -15,10 +15,17 @@
  */
 package de.adorsys.jmspojo;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public abstract class JMSFuture<V> implements Future<V>, AutoCloseable {
 	
@@ -29,15 +36,95 @@ public abstract class JMSFuture<V> implements Future<V>, AutoCloseable {
     
 	public abstract V get() throws ExecutionException;
 	
+	/**
+	 * Returns a {@link CompletableFuture} completed with the reply of this future. Futures
+	 * created by the JMS adapters complete it from the reply listener without blocking a thread;
+	 * other implementations fall back to waiting for {@link #get()} in the common pool.
+	 * Cancelling the returned future cancels this one.
+	 */
+	public CompletableFuture<V> toCompletableFuture() {
+		CompletableFuture<V> completableFuture = CompletableFuture.supplyAsync(() -> {
+			try {
+				return get();
+			} catch (ExecutionException e) {
+				throw new CompletionException(e.getCause() != null ? e.getCause() : e);
+			}
+		});
+		completableFuture.whenComplete((value, failure) -> {
+			if (completableFuture.isCancelled()) {
+				cancel(false);
+			}
+		});
+		return completableFuture;
+	}
+	
+	public CompletionStage<V> toCompletionStage() {
+		return toCompletableFuture();
+	}
+	
+	public <U> CompletableFuture<U> thenApply(Function<? super V, ? extends U> fn) {
+		return toCompletableFuture().thenApply(fn);
+	}
+	
+	public CompletableFuture<V> whenComplete(BiConsumer<? super V, ? super Throwable> action) {
+		return toCompletableFuture().whenComplete(action);
+	}
+	
+	/**
+	 * Registers a callback run once this future is done.
+	 *
+	 * @return false if this future cannot notify its completion
+	 */
+	boolean onDone(Runnable callback) {
+		return false;
+	}
+	
+	/**
+	 * Waits for all futures within a common timeout. Replies of the JMS adapters are awaited
+	 * together, the first failed one ends the wait.
+	 */
+	@SuppressWarnings("unchecked")
 	public static void waitForAll(long timeout, JMSFuture<?>... futures) throws ExecutionException, TimeoutException {
-		long currentTimeMillis = System.currentTimeMillis();
+		JMSFutureSelector<Object> selector = new JMSFutureSelector<>(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+		List<JMSFuture<?>> blocking = new ArrayList<>();
 		for (JMSFuture<?> jmsFuture : futures) {
-			long leftTime = timeout - (System.currentTimeMillis() - currentTimeMillis);
-			if (leftTime <= 0) {
-				throw new TimeoutException();
+			if (!selector.offer((JMSFuture<Object>) jmsFuture)) {
+				blocking.add(jmsFuture);
 			}
-			jmsFuture.get(leftTime, TimeUnit.MILLISECONDS);
 		}		
+		while (selector.hasNext()) {
+			// completed, get only reports the failure
+			selector.take().get(0, TimeUnit.MILLISECONDS);
+		}
+		for (JMSFuture<?> jmsFuture : blocking) {
+			jmsFuture.get(selector.getRemainingMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * @return the first future which completed, successfully or not
+	 * @throws TimeoutException if none completed within the timeout
+	 */
+	@SafeVarargs
+	public static <T> JMSFuture<T> waitForAny(long timeout, JMSFuture<T>... futures) throws TimeoutException {
+		List<JMSFuture<T>> list = new ArrayList<>(futures.length);
+		// copied element by element, the varargs array does not escape
+		for (JMSFuture<T> future : futures) {
+			list.add(future);
+		}
+		return new JMSFutureSelector<>(timeout, list).take();
+	}
+	
+	/**
+	 * @return a selector returning the futures in the order they complete within the timeout
+	 */
+	@SafeVarargs
+	public static <T> JMSFutureSelector<T> inCompletionOrder(long timeout, JMSFuture<T>... futures) {
+		List<JMSFuture<T>> list = new ArrayList<>(futures.length);
+		for (JMSFuture<T> future : futures) {
+			list.add(future);
+		}
+		return new JMSFutureSelector<>(timeout, list);
 	}
     
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Iterates over futures in the order they complete, successfully or not, within one common deadline.
+ *
+ * Futures created by the JMS adapters report their completion to one queue, which the iterating
+ * thread waits on, so waiting for many replies takes as long as the slowest of them. Other
+ * futures are waited for by a pool thread each.
+ *
+ * <pre>
+ * JMSFutureSelector&lt;PingMessage&gt; selector = JMSFuture.inCompletionOrder(2000, futures);
+ * while (selector.hasNext()) {
+ *     PingMessage reply = selector.take().get();
+ * }
+ * </pre>
+ *
+ * @author sso
+ */
+public class JMSFutureSelector<T> implements Iterator<JMSFuture<T>> {
+
+	private final long deadline;
+	private final BlockingQueue<JMSFuture<T>> completed = new LinkedBlockingQueue<>();
+	private int remaining;
+
+	/**
+	 * @param timeout the time in ms all futures have to complete in, measured from now
+	 */
+	public JMSFutureSelector(long timeout, Collection<? extends JMSFuture<T>> futures) {
+		this(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+		for (final JMSFuture<T> future : futures) {
+			if (!offer(future)) {
+				remaining++;
+				future.toCompletableFuture().whenComplete((value, failure) -> completed.add(future));
+			}
+		}
+	}
+
+	JMSFutureSelector(long deadline) {
+		super();
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Adds a future which notifies on completion.
+	 *
+	 * @return false if the future cannot notify and has not been added
+	 */
+	boolean offer(final JMSFuture<T> future) {
+		if (!future.onDone(() -> completed.add(future))) {
+			return false;
+		}
+		remaining++;
+		return true;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return remaining > 0;
+	}
+
+	/**
+	 * @throws JMSServiceException caused by a {@link TimeoutException} if the deadline has passed
+	 */
+	@Override
+	public JMSFuture<T> next() {
+		try {
+			return take();
+		} catch (TimeoutException e) {
+			throw new JMSServiceException(e);
+		}
+	}
+
+	/**
+	 * Waits for the next completed future.
+	 *
+	 * @throws TimeoutException if no further future completed before the deadline
+	 */
+	public JMSFuture<T> take() throws TimeoutException {
+		if (remaining == 0) {
+			throw new NoSuchElementException();
+		}
+		try {
+			JMSFuture<T> future = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (future == null) {
+				throw new TimeoutException(remaining + " futures did not complete in time");
+			}
+			remaining--;
+			return future;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSServiceException(e);
+		}
+	}
+
+	/**
+	 * @return the time in ms left until the deadline
+	 * @throws TimeoutException if the deadline has passed
+	 */
+	long getRemainingMillis() throws TimeoutException {
+		long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+		if (left <= 0) {
+			throw new TimeoutException();
+		}
+		return left;
+	}
+
+}
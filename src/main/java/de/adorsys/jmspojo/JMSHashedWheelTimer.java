@@ -0,0 +1,316 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer for the many short living timeouts of JMS calls.
+ *
+ * Tasks are hashed into a wheel of <code>wheelSize</code> buckets of <code>tickMs</code> each, which
+ * a single worker thread advances tick by tick. Scheduling and cancelling are O(1): new tasks are
+ * queued and put into their bucket by the worker, cancelled tasks drop their runnable at once and are
+ * unlinked from their bucket on the next tick. Tasks run on the worker thread at most one tick late,
+ * so they must be short.
+ *
+ * The worker is a daemon thread, started with the first scheduled task and stopped by {@link #stop()}.
+ * Tasks pending when the timer stops do not run, their stop action runs instead.
+ *
+ * @author sso
+ */
+class JMSHashedWheelTimer {
+
+	private static final int STATE_CREATED = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_STOPPED = 2;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger state = new AtomicInteger(STATE_CREATED);
+	private final AtomicInteger pending = new AtomicInteger();
+	private final Thread worker;
+	private volatile long startTime;
+
+	/**
+	 * @param tickMs the timer resolution in ms
+	 * @param wheelSize the number of buckets, rounded up to a power of two
+	 */
+	JMSHashedWheelTimer(String name, long tickMs, int wheelSize) {
+		if (tickMs < 1 || wheelSize < 1) {
+			throw new IllegalArgumentException("tickMs and wheelSize must be at least 1");
+		}
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+		int size = Integer.highestOneBit(wheelSize - 1) << 1;
+		this.wheel = new Bucket[Math.max(size, 1)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = wheel.length - 1;
+		this.worker = new Thread(this::run, name);
+		worker.setDaemon(true);
+	}
+
+	Timeout schedule(long delayMs, Runnable task) {
+		return schedule(delayMs, task, null);
+	}
+
+	/**
+	 * @param stopped run instead of the task if the timer stops before, may be null
+	 */
+	Timeout schedule(long delayMs, Runnable task, Runnable stopped) {
+		if (state.get() == STATE_CREATED) {
+			start();
+		}
+		if (state.get() == STATE_STOPPED) {
+			throw new JMSServiceException("housekeeping timer is stopped");
+		}
+		Timeout timeout = new Timeout(this, task, stopped, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMs, 0)));
+		pending.incrementAndGet();
+		scheduled.add(timeout);
+		if (state.get() == STATE_STOPPED) {
+			// the worker may have finished before the task was queued
+			stopScheduled();
+		}
+		return timeout;
+	}
+
+	private synchronized void start() {
+		if (state.get() == STATE_CREATED) {
+			// ticks are counted from the start, the worker must not catch up on the time before
+			startTime = System.nanoTime();
+			state.set(STATE_STARTED);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Stops the worker, tasks not run yet run their stop action on the worker thread.
+	 */
+	void stop() {
+		if (state.getAndSet(STATE_STOPPED) == STATE_STARTED) {
+			worker.interrupt();
+		}
+	}
+
+	boolean isStopped() {
+		return state.get() == STATE_STOPPED;
+	}
+
+	int getPendingCount() {
+		return pending.get();
+	}
+
+	private void run() {
+		long tick = 0;
+		while (state.get() == STATE_STARTED) {
+			long deadline = tickNanos * (tick + 1);
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					continue;
+				}
+			}
+			unlinkCancelled();
+			transferScheduled(tick);
+			wheel[(int) (tick & mask)].expire();
+			tick++;
+		}
+		stopScheduled();
+		for (Bucket bucket : wheel) {
+			bucket.stop();
+		}
+	}
+
+	private void stopScheduled() {
+		Timeout timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			timeout.stop();
+		}
+	}
+
+	private void transferScheduled(long tick) {
+		Timeout timeout;
+		while ((timeout = scheduled.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			// overdue tasks expire with the current tick
+			long ticks = Math.max(timeout.deadline / tickNanos, tick);
+			timeout.remainingRounds = (ticks - tick) / wheel.length;
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void unlinkCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * A scheduled task, which may be cancelled as long as it has not run.
+	 */
+	static final class Timeout implements JMSResourceHousekeeper.JMSScheduledTask {
+
+		private static final int ST_PENDING = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+
+		private final JMSHashedWheelTimer timer;
+		private final long deadline;
+		private final AtomicInteger taskState = new AtomicInteger(ST_PENDING);
+		private volatile Runnable task;
+		private volatile Runnable stopped;
+		// owned by the worker thread
+		private long remainingRounds;
+		private Bucket bucket;
+		private Timeout next;
+		private Timeout prev;
+
+		Timeout(JMSHashedWheelTimer timer, Runnable task, Runnable stopped, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.stopped = stopped;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!taskState.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+				return false;
+			}
+			// the task is released at once, the entry is unlinked by the worker
+			task = null;
+			stopped = null;
+			timer.pending.decrementAndGet();
+			timer.cancelled.add(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return taskState.get() == ST_CANCELLED;
+		}
+
+		void expire() {
+			if (!taskState.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+				return;
+			}
+			timer.pending.decrementAndGet();
+			Runnable runnable = task;
+			task = null;
+			stopped = null;
+			try {
+				runnable.run();
+			} catch (Throwable e) {
+				e.printStackTrace();
+			}
+		}
+
+		void stop() {
+			if (!taskState.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+				return;
+			}
+			timer.pending.decrementAndGet();
+			Runnable runnable = stopped;
+			task = null;
+			stopped = null;
+			try {
+				if (runnable != null) {
+					runnable.run();
+				}
+			} catch (Throwable e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Doubly linked list of the timeouts of one tick, only accessed by the worker thread.
+	 */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void stop() {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				remove(timeout);
+				timeout.stop();
+				timeout = next;
+			}
+		}
+
+		void expire() {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					remove(timeout);
+					timeout.expire();
+				} else if (timeout.isCancelled()) {
+					remove(timeout);
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+}
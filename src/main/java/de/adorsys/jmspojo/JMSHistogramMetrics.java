@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link JMSMetrics} keeping a {@link JMSLatencyHistogram} per phase and a counter per event
+ * for every service method, keyed by <code>service class name#method name(parameter types)</code>. The
+ * service is the proxied interface, so inherited methods are recorded under the interface they are
+ * called through, and overloaded methods are recorded apart. Queries may name a method without its
+ * parameter types as long as the name is not overloaded.
+ *
+ * @author sso
+ */
+public class JMSHistogramMetrics implements JMSMetrics {
+
+	private final ConcurrentMap<String, HistogramMethodMetrics> methods = new ConcurrentHashMap<>();
+
+	@Override
+	public JMSMethodMetrics getMethodMetrics(Class<?> service, Method method) {
+		String key = getKey(service, method);
+		HistogramMethodMetrics metrics = methods.get(key);
+		if (metrics == null) {
+			HistogramMethodMetrics created = new HistogramMethodMetrics();
+			metrics = methods.putIfAbsent(key, created);
+			if (metrics == null) {
+				metrics = created;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return the keys of all methods recorded so far
+	 */
+	public Set<String> getKeys() {
+		return Collections.unmodifiableSet(new TreeMap<>(methods).keySet());
+	}
+
+	/**
+	 * @return the histogram of the phase or null if the method is unknown
+	 */
+	public JMSLatencyHistogram getHistogram(Class<?> service, Method method, Phase phase) {
+		HistogramMethodMetrics metrics = methods.get(getKey(service, method));
+		return metrics != null ? metrics.histograms.get(phase) : null;
+	}
+
+	/**
+	 * @param method the method name, with its parameter types like <code>ping(java.lang.String)</code>
+	 * if it is overloaded
+	 * @return the histogram of the phase or null if the method is unknown
+	 */
+	public JMSLatencyHistogram getHistogram(Class<?> service, String method, Phase phase) {
+		HistogramMethodMetrics metrics = find(service, method);
+		return metrics != null ? metrics.histograms.get(phase) : null;
+	}
+
+	public long getCount(Class<?> service, Method method, Event event) {
+		HistogramMethodMetrics metrics = methods.get(getKey(service, method));
+		return metrics != null ? metrics.counters.get(event).sum() : 0;
+	}
+
+	/**
+	 * @param method the method name, with its parameter types like <code>ping(java.lang.String)</code>
+	 * if it is overloaded
+	 */
+	public long getCount(Class<?> service, String method, Event event) {
+		HistogramMethodMetrics metrics = find(service, method);
+		return metrics != null ? metrics.counters.get(event).sum() : 0;
+	}
+
+	private HistogramMethodMetrics find(Class<?> service, String method) {
+		String key = service.getName() + "#" + method;
+		HistogramMethodMetrics metrics = methods.get(key);
+		if (metrics != null || method.indexOf('(') != -1) {
+			return metrics;
+		}
+		String prefix = key + "(";
+		for (Map.Entry<String, HistogramMethodMetrics> entry : methods.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				if (metrics != null) {
+					throw new IllegalArgumentException("method " + method + " of " + service.getName() + " is overloaded, give its parameter types");
+				}
+				metrics = entry.getValue();
+			}
+		}
+		return metrics;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, HistogramMethodMetrics> entry : new TreeMap<>(methods).entrySet()) {
+			report.append(entry.getKey());
+			for (Map.Entry<Event, LongAdder> counter : entry.getValue().counters.entrySet()) {
+				report.append(' ').append(counter.getKey()).append('=').append(counter.getValue().sum());
+			}
+			report.append('\n');
+			for (Map.Entry<Phase, JMSLatencyHistogram> histogram : entry.getValue().histograms.entrySet()) {
+				if (histogram.getValue().getCount() > 0) {
+					report.append("  ").append(histogram.getKey()).append(' ').append(histogram.getValue()).append('\n');
+				}
+			}
+		}
+		return report.toString();
+	}
+
+	private static String getKey(Class<?> service, Method method) {
+		StringBuilder key = new StringBuilder(service.getName()).append('#').append(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				key.append(',');
+			}
+			key.append(parameterTypes[i].getTypeName());
+		}
+		return key.append(')').toString();
+	}
+
+	private static class HistogramMethodMetrics implements JMSMethodMetrics {
+
+		private final Map<Phase, JMSLatencyHistogram> histograms = new EnumMap<>(Phase.class);
+		private final Map<Event, LongAdder> counters = new EnumMap<>(Event.class);
+
+		HistogramMethodMetrics() {
+			for (Phase phase : Phase.values()) {
+				histograms.put(phase, new JMSLatencyHistogram());
+			}
+			for (Event event : Event.values()) {
+				counters.put(event, new LongAdder());
+			}
+		}
+
+		@Override
+		public void record(Phase phase, long nanos) {
+			histograms.get(phase).record(nanos);
+		}
+
+		@Override
+		public void increment(Event event) {
+			counters.get(event).increment();
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Base of Jackson mappers for binary data formats. Payloads are only read from and written
+ * to bytes messages, a text representation does not exist. Readers and writers are prebuilt
+ * once per type.
+ */
+public class JMSJacksonBinaryMapper implements JMSBinaryObjectMapper, Cloneable {
+
+	private JMSJacksonTypeCache typeCache;
+	private final String contentType;
+
+	public JMSJacksonBinaryMapper(ObjectMapper objectMapper, String contentType) {
+		super();
+		this.typeCache = new JMSJacksonTypeCache(objectMapper);
+		this.contentType = contentType;
+	}
+
+	protected ObjectMapper getObjectMapper() {
+		return typeCache.getObjectMapper();
+	}
+
+	JMSJacksonTypeCache getTypeCache() {
+		return typeCache;
+	}
+
+	/**
+	 * @return a copy of this mapper, of the same class, whose reader and writer of the method's types are resolved
+	 */
+	@Override
+	public JMSBodyMapper bind(Type readType, Type writeType) {
+		try {
+			JMSJacksonBinaryMapper bound = (JMSJacksonBinaryMapper) clone();
+			bound.typeCache = typeCache.bind(readType, writeType);
+			return bound;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream out) {
+		try {
+			typeCache.writer(object.getClass()).writeValue(out, object);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(InputStream in, Class<T> type) {
+		return deserialize(in, (Type) type);
+	}
+
+	@Override
+	public <T> T deserialize(InputStream in, Type type) {
+		try {
+			return typeCache.reader(type).readValue(in);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
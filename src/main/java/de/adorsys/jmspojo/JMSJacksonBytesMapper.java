@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson mapper sending JSON as UTF-8 bytes in a {@link javax.jms.BytesMessage}. Listeners
+ * accept both text and bytes messages, so producers may switch before or after their consumers.
+ */
+public class JMSJacksonBytesMapper extends JMSJacksonMapper implements JMSBinaryObjectMapper {
+
+	public JMSJacksonBytesMapper(ObjectMapper objectMapper) {
+		super(objectMapper);
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream out) {
+		try {
+			if (object instanceof String) {
+				out.write(((String) object).getBytes(StandardCharsets.UTF_8));
+			} else {
+				getTypeCache().writer(object.getClass()).writeValue(out, object);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(InputStream in, Class<T> type) {
+		return deserialize(in, (Type) type);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T deserialize(InputStream in, Type type) {
+		try {
+			if (type == String.class) {
+				ByteArrayOutputStream text = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					text.write(buffer, 0, read);
+				}
+				return (T) new String(text.toByteArray(), StandardCharsets.UTF_8);
+			}
+			return getTypeCache().reader(type).readValue(in);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -16,17 +16,53 @@
 package de.adorsys.jmspojo;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-public class JMSJacksonMapper implements JMSObjectMapper {
+/**
+ * Jackson JSON mapper. Readers and writers are prebuilt once per type, the given
+ * {@link ObjectMapper} must be completely configured before.
+ */
+public class JMSJacksonMapper implements JMSObjectMapper, Cloneable {
+	
+	public static final String CONTENT_TYPE = "application/json";
 	
-	private final ObjectMapper objectMapper;
+	private JMSJacksonTypeCache typeCache;
 
 	public JMSJacksonMapper(ObjectMapper objectMapper) {
 		super();
-		this.objectMapper = objectMapper;
+		this.typeCache = new JMSJacksonTypeCache(objectMapper);
+	}
+
+	protected ObjectMapper getObjectMapper() {
+		return typeCache.getObjectMapper();
+	}
+
+	JMSJacksonTypeCache getTypeCache() {
+		return typeCache;
+	}
+
+	/**
+	 * @return a copy of this mapper, of the same class, whose reader and writer of the method's types are resolved
+	 */
+	@Override
+	public JMSBodyMapper bind(Type readType, Type writeType) {
+		try {
+			JMSJacksonMapper bound = (JMSJacksonMapper) clone();
+			bound.typeCache = typeCache.bind(readType, writeType);
+			return bound;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
 	}
 
 	@Override
@@ -35,20 +71,47 @@ public class JMSJacksonMapper implements JMSObjectMapper {
 			return (String) object;
 		}
 		try {
-			return objectMapper.writeValueAsString(object);
+			return typeCache.writer(object.getClass()).writeValueAsString(object);
 		} catch (JsonProcessingException e) {
 			throw new IllegalStateException(e);
 		}
 	}
 
-	@SuppressWarnings("unchecked")
+	@Override
+	public void serializeUtf8(Object object, OutputStream out) throws IOException {
+		if (object instanceof String || object == null) {
+			JMSObjectMapper.super.serializeUtf8(object, out);
+			return;
+		}
+		typeCache.writer(object.getClass()).writeValue(out, object);
+	}
+
 	@Override
 	public <T> T deserialize(String serialized, Class<T> type) {
+		return deserialize(serialized, (Type) type);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T deserialize(String serialized, Type type) {
 		if (type == String.class) {
 			return (T)serialized;
 		}
 		try {
-			return objectMapper.readValue(serialized, type);
+			return typeCache.reader(type).readValue(serialized);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T deserializeUtf8(byte[] utf8, int offset, int length, Type type) {
+		if (type == String.class) {
+			return (T) new String(utf8, offset, length, StandardCharsets.UTF_8);
+		}
+		try {
+			return typeCache.reader(type).readValue(utf8, offset, length);
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Jackson Smile, a binary JSON. Requires the optional dependency jackson-dataformat-smile.
+ */
+public class JMSJacksonSmileMapper extends JMSJacksonBinaryMapper {
+
+	public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+	public JMSJacksonSmileMapper() {
+		this(new ObjectMapper(new SmileFactory()));
+	}
+
+	/**
+	 * @param objectMapper a mapper created with a {@link SmileFactory}
+	 */
+	public JMSJacksonSmileMapper(ObjectMapper objectMapper) {
+		super(objectMapper, CONTENT_TYPE);
+	}
+
+}
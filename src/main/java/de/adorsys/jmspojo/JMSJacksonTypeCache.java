@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Prebuilt {@link ObjectReader}s per target type and {@link ObjectWriter}s per value class, so
+ * Jackson resolves types and looks up (de)serializers once instead of for every message.
+ * Readers and writers are created from the mapper's configuration at first use, the mapper
+ * must not be reconfigured afterwards.
+ *
+ * The proxies and listener adapters {@link #bind(Type, Type) bind} the cache to the types of each
+ * method once, the bound reader and writer are then kept in fields and need no lookup per message.
+ */
+class JMSJacksonTypeCache {
+
+	private final ObjectMapper objectMapper;
+	private final ConcurrentMap<Type, ObjectReader> readers;
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers;
+
+	JMSJacksonTypeCache(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		this.readers = new ConcurrentHashMap<>();
+		this.writers = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Shares the readers and writers of <code>cache</code>.
+	 */
+	private JMSJacksonTypeCache(JMSJacksonTypeCache cache) {
+		this.objectMapper = cache.objectMapper;
+		this.readers = cache.readers;
+		this.writers = cache.writers;
+	}
+
+	/**
+	 * @param readType the type of the bodies read, null if none are read
+	 * @param writeType the declared type of the bodies written, null if none are written
+	 * @return a cache answering the types of one method from fields, all others from this cache
+	 */
+	JMSJacksonTypeCache bind(Type readType, Type writeType) {
+		return new Bound(this, readType, writeType);
+	}
+
+	ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	ObjectReader reader(Type type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = objectMapper.readerFor(objectMapper.getTypeFactory().constructType(type));
+			ObjectReader cached = readers.putIfAbsent(type, reader);
+			if (cached != null) {
+				reader = cached;
+			}
+		}
+		return reader;
+	}
+
+	ObjectWriter writer(Class<?> type) {
+		ObjectWriter writer = writers.get(type);
+		if (writer == null) {
+			writer = objectMapper.writerFor(type);
+			ObjectWriter cached = writers.putIfAbsent(type, writer);
+			if (cached != null) {
+				writer = cached;
+			}
+		}
+		return writer;
+	}
+
+	private static final class Bound extends JMSJacksonTypeCache {
+
+		private final Type readType;
+		private final ObjectReader reader;
+		private final Class<?> writeClass;
+		private final ObjectWriter writer;
+
+		Bound(JMSJacksonTypeCache cache, Type readType, Type writeType) {
+			super(cache);
+			this.readType = readType;
+			this.reader = readType != null ? cache.reader(readType) : null;
+			// values of a subclass need a writer of their own
+			this.writeClass = writeType instanceof Class ? (Class<?>) writeType : null;
+			this.writer = writeClass != null ? cache.writer(writeClass) : null;
+		}
+
+		@Override
+		ObjectReader reader(Type type) {
+			if (readType != null && (type == readType || readType.equals(type))) {
+				return reader;
+			}
+			return super.reader(type);
+		}
+
+		@Override
+		ObjectWriter writer(Class<?> type) {
+			if (type == writeClass) {
+				return writer;
+			}
+			return super.writer(type);
+		}
+	}
+
+}
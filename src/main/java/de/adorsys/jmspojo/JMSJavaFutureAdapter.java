@@ -15,13 +15,10 @@
  */
 package de.adorsys.jmspojo;
 
-import java.text.MessageFormat;
+import java.lang.reflect.Type;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
-import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
@@ -30,22 +27,82 @@ import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.TemporaryQueue;
-import javax.jms.TextMessage;
+import javax.jms.TemporaryTopic;
+
+import de.adorsys.jmspojo.JMSConnectionPool.JMSPooledSession;
+import de.adorsys.jmspojo.JMSMetrics.Event;
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+import de.adorsys.jmspojo.JMSMetrics.Phase;
 
 public class JMSJavaFutureAdapter<T> {
 	
-	private final Class<T> responseType;
-	private final JMSObjectMapper objectMapper;
-	private final ConnectionFactory connectionFactory;
+	private final Type responseType;
+	private final JMSBodyMapper objectMapper;
+	private final JMSConnectionPool connectionPool;
+	private final JMSReplyChannel replyChannel;
 	private final long timeout;
+	private final JMSMethodMetrics metrics;
+	private String operation;
+	private JMSCompression compression;
+	private JMSChunking chunking;
 	
 	public JMSJavaFutureAdapter(JMSObjectMapper objectMapper,
 			ConnectionFactory connectionFactory, Class<T> responseType, long timeout) {
+		this(objectMapper, JMSConnectionPool.unpooled(connectionFactory), responseType, timeout);
+	}
+	
+	public JMSJavaFutureAdapter(JMSBodyMapper objectMapper,
+			JMSConnectionPool connectionPool, Class<T> responseType, long timeout) {
+		this(objectMapper, connectionPool, null, responseType, timeout);
+	}
+
+	/**
+	 * @param replyChannel if not null replies are received through the shared reply channel
+	 * instead of a temporary queue per request
+	 * @param responseType the reply type, may be generic
+	 */
+	public JMSJavaFutureAdapter(JMSBodyMapper objectMapper,
+			JMSConnectionPool connectionPool, JMSReplyChannel replyChannel, Type responseType, long timeout) {
+		this(objectMapper, connectionPool, replyChannel, responseType, timeout, JMSMethodMetrics.NOOP);
+	}
+
+	/**
+	 * @param metrics records serialization, send, reply and deserialization times, timeouts and error replies
+	 */
+	public JMSJavaFutureAdapter(JMSBodyMapper objectMapper,
+			JMSConnectionPool connectionPool, JMSReplyChannel replyChannel, Type responseType, long timeout, JMSMethodMetrics metrics) {
 		super();
 		this.objectMapper = objectMapper;
-		this.connectionFactory = connectionFactory;
+		this.connectionPool = connectionPool;
+		this.replyChannel = replyChannel;
 		this.responseType = responseType;
 		this.timeout = timeout;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @param operation stamped on every message as {@link JMSMessageReceiver#OPERATION_PROPERTY}
+	 */
+	void setOperation(String operation) {
+		this.operation = operation;
+	}
+	
+	/**
+	 * @param compression compresses the sent bodies above its threshold, null sends them as they are
+	 */
+	void setCompression(JMSCompression compression) {
+		this.compression = compression;
+	}
+	
+	/**
+	 * @param chunking sends bodies larger than its chunk size in chunks, null sends them as one message
+	 */
+	void setChunking(JMSChunking chunking) {
+		this.chunking = chunking;
+	}
+	
+	JMSMethodMetrics getMetrics() {
+		return metrics;
 	}
 	
 	boolean isReply() {
@@ -53,170 +110,255 @@ public class JMSJavaFutureAdapter<T> {
 	}
 
 	JMSFuture<T> send(Destination destination, Map<String, Object> messageProperties, Object data) {
-		Connection jmsConnection = null;
-		Session jmsSession = null;
-		try {
-			jmsConnection = connectionFactory.createConnection();
-			jmsSession = jmsConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+		return send(destination, messageProperties, data, null);
+	}
 
-			TextMessage textMessage = jmsSession.createTextMessage();
-			if (data != null) {
-				String jsonMessage = objectMapper.serialize(data);
-				textMessage.setText(jsonMessage);
-			}
-			setMessageProperties(messageProperties, textMessage);
+	JMSFuture<T> send(Destination destination, Map<String, Object> messageProperties, Object data, String correlationId) {
+		JMSPooledSession pooledSession = connectionPool.borrow();
+		TemporaryQueue replyTo = null;
+		JMSReplyFuture<T> channelFuture = null;
+		try {
+			Session jmsSession = pooledSession.getSession();
+			final long deadline = getDeadline();
+			String messageCorrelationId = correlationId;
+			Destination replyDestination = null;
 
-			if (isReply()) {
-				TemporaryQueue replyTo = jmsSession.createTemporaryQueue();
-				textMessage.setJMSReplyTo(replyTo);
+			if (isReply() && replyChannel != null) {
+				// register before sending, the reply may arrive before send returns
+				channelFuture = replyChannel.register(this, timeout);
+				messageCorrelationId = channelFuture.getCorrelationId();
+				replyDestination = replyChannel.getReplyDestination();
+			} else if (isReply()) {
+				replyTo = jmsSession.createTemporaryQueue();
+				replyDestination = replyTo;
 			}
 			
-			send(destination, jmsSession, textMessage);
+			Message message = sendMessage(jmsSession, (d, m) -> pooledSession.send(d, m, timeToLive(deadline)), destination, messageProperties, data,
+					messageCorrelationId, replyDestination, deadline);
+			long sent = System.nanoTime();
 			
-			jmsConnection.start();
-			
-			JMSFuture<T> future = null;
-			if (isReply()) {
-				final Session s = jmsSession;
-				final Connection c = jmsConnection;
-				AutoCloseable jmsResources = new AutoCloseable() {
-					
-					@Override
-					public void close() throws Exception {
-						JMSResourceHousekeeper.close(s);
-						JMSResourceHousekeeper.close(c);
-					}
-				};
-				
-				future = createReplyFuture(jmsSession, textMessage, jmsResources);
+			if (!isReply() || channelFuture != null) {
+				connectionPool.release(pooledSession);
+				if (channelFuture != null) {
+					channelFuture.sent(sent);
+				}
+				return channelFuture;
 			}
+			// the future owns the pooled session until it is closed
+			JMSReplyFuture<T> future = createReplyFuture(pooledSession, message, replyTo);
+			future.sent(sent);
 			return future;
 		} catch (JMSException e) {
+			JMSResourceHousekeeper.close(channelFuture);
+			invalidateReplyResources(pooledSession, null, replyTo);
 			throw new JMSServiceException(e);
-		} finally {
-			if (!isReply()) {
-				JMSResourceHousekeeper.close(jmsSession);
-				JMSResourceHousekeeper.close(jmsConnection);
-			}
+		} catch (RuntimeException e) {
+			JMSResourceHousekeeper.close(channelFuture);
+			releaseReplyResources(pooledSession, replyTo);
+			throw e;
 		}
 	}
 
-	private void setMessageProperties(Map<String, Object> messageProperties, TextMessage textMessage) {
-		if (messageProperties != null) {
-			JMSProperties jmsProperties = new JMSProperties(textMessage);
-			jmsProperties.setProperties(messageProperties);
+	/**
+	 * Sends a request answered by a stream of replies, they are received through a temporary
+	 * queue whose consumer is created before the request is sent.
+	 */
+	JMSReplyStream<T> stream(Destination destination, Map<String, Object> messageProperties, Object data) {
+		JMSPooledSession pooledSession = connectionPool.borrow();
+		TemporaryQueue replyTo = null;
+		MessageConsumer consumer = null;
+		try {
+			Session jmsSession = pooledSession.getSession();
+			final long deadline = getDeadline();
+			replyTo = jmsSession.createTemporaryQueue();
+			consumer = jmsSession.createConsumer(replyTo);
+			Message message = sendMessage(jmsSession, (d, m) -> pooledSession.send(d, m, timeToLive(deadline)), destination, messageProperties, data,
+					null, replyTo, deadline);
+
+			final MessageConsumer streamConsumer = consumer;
+			final TemporaryQueue streamReplyTo = replyTo;
+			// the stream owns the pooled session until it is closed
+			return new JMSReplyStream<>(message.getJMSMessageID(), this, consumer, () -> {
+				JMSResourceHousekeeper.close(streamConsumer);
+				releaseReplyResources(pooledSession, streamReplyTo);
+			}, timeout);
+		} catch (JMSException e) {
+			invalidateReplyResources(pooledSession, consumer, replyTo);
+			throw new JMSServiceException(e);
+		} catch (RuntimeException e) {
+			JMSResourceHousekeeper.close(consumer);
+			releaseReplyResources(pooledSession, replyTo);
+			throw e;
 		}
 	}
 
-	private JMSFuture<T> createReplyFuture(Session jmsSession, final Message callerMessage, final AutoCloseable jmsResources) {
+	/**
+	 * Sends a message without reply with the given session and producer, listeners use it to
+	 * reply through the session of the received message and within its transaction.
+	 */
+	void send(Session session, MessageProducer producer, Destination destination, Map<String, Object> messageProperties, Object data, String correlationId) {
 		try {
-			final JMSCloseable<MessageConsumer> jmsConsumer = JMSCloseable.wrap(jmsSession.createConsumer(callerMessage.getJMSReplyTo()));
-			
-			JMSFuture<T> future = new JMSFuture<T>() {
-				
-				boolean closed;
-				boolean done;
-				private T object;
-
-				@Override
-				public boolean cancel(boolean mayInterruptIfRunning) {
-					return false;
+			sendMessage(session, (d, m) -> {
+				if (d instanceof TemporaryQueue || d instanceof TemporaryTopic) {
+					JMSPooledSession.sendToTemporary(producer, d, m, producer.getTimeToLive());
+				} else {
+					producer.send(d, m);
 				}
+			}, destination, messageProperties, data, correlationId, null, 0);
+		} catch (JMSException e) {
+			throw new JMSServiceException(e);
+		}
+	}
 
-				@Override
-				public boolean isCancelled() {
-					return closed;
-				}
+	/**
+	 * A request is of no use after the caller stopped waiting for its reply.
+	 *
+	 * @return the time in ms the caller stops waiting, 0 if the call has no reply
+	 */
+	private long getDeadline() {
+		return isReply() && timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+	}
 
-				@Override
-				public boolean isDone() {
-					return done;
-				}
+	private static long timeToLive(long deadline) {
+		return deadline > 0 ? Math.max(1, deadline - System.currentTimeMillis()) : Message.DEFAULT_TIME_TO_LIVE;
+	}
 
-				@Override
-				public T get() throws ExecutionException {
-					try {
-						return get(timeout, TimeUnit.MILLISECONDS);
-					} catch (TimeoutException e) {
-						throw new ExecutionException(e);
-					} finally {
-						close();
-					}
-				}
+	/**
+	 * Sends the message, or its chunks if its body exceeds the chunk size.
+	 *
+	 * @param deadline stamped as {@link JMSMessageReceiver#DEADLINE_PROPERTY} if not 0
+	 * @return the last message sent
+	 */
+	private Message sendMessage(Session session, JMSChunking.MessageSender sender, Destination destination,
+			final Map<String, Object> messageProperties, Object data, final String correlationId, final Destination replyTo, final long deadline) throws JMSException {
+		if (chunking != null && data != null) {
+			return chunking.send(session, objectMapper, data, compression,
+					message -> decorate(message, messageProperties, correlationId, replyTo, deadline), sender, destination, metrics);
+		}
+		long start = System.nanoTime();
+		Message message = JMSMessageBody.createMessage(session, objectMapper, data, compression);
+		metrics.record(Phase.SERIALIZE, System.nanoTime() - start);
+		decorate(message, messageProperties, correlationId, replyTo, deadline);
+		long sendStart = System.nanoTime();
+		sender.send(destination, message);
+		metrics.record(Phase.SEND, System.nanoTime() - sendStart);
+		return message;
+	}
 
-				@Override
-				public T get(long timeout, TimeUnit unit)
-						throws ExecutionException, TimeoutException {
-					if (object != null) {
-						return object;
-					}
-					try {
-						TextMessage message = (TextMessage) jmsConsumer.get().receive(unit.toMillis(timeout));
-						if (message == null) {
-							String reason = MessageFormat.format("timeout of reply mesage {0} timeout {1} {2}", callerMessage.getJMSMessageID(), timeout, unit);
-							throw new TimeoutException(reason);
-						}
-						done = true;
-						
-						checkForError(message);
-						
-						object = toObject(message);
-						return object;
-					} catch (JMSException e) {
-						throw new JMSServiceException(e);
-					} finally {
-						close();
-					}
-				}
+	private void decorate(Message message, Map<String, Object> messageProperties, String correlationId, Destination replyTo, long deadline) throws JMSException {
+		setMessageProperties(messageProperties, message);
+		if (deadline > 0) {
+			message.setLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY, deadline);
+		}
+		if (correlationId != null) {
+			message.setJMSCorrelationID(correlationId);
+		}
+		if (replyTo != null) {
+			message.setJMSReplyTo(replyTo);
+		}
+		if (operation != null) {
+			message.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, operation);
+		}
+	}
 
-				private void checkForError(TextMessage message) throws JMSException, ExecutionException {
-					String error = message.getStringProperty("ERROR");
-					if (error != null) {
-						throw new ExecutionException(error, null);
-					}
-				}
+	private void releaseReplyResources(JMSPooledSession pooledSession, TemporaryQueue replyTo) {
+		try {
+			if (replyTo != null) {
+				// temporary queues live as long as the connection, so they must not outlive the call
+				replyTo.delete();
+			}
+			connectionPool.release(pooledSession);
+		} catch (JMSException e) {
+			connectionPool.invalidate(pooledSession);
+		}
+	}
 
-				private T toObject(Message message) {
-					if (message == null) {
-						return null;
-					}
-					assert message instanceof TextMessage : "message is no instance of text message";
-					try {
-						if (responseType == Void.class) {
-							// if void is defined no body will be deserialized, just an reply ACK
-							return null;
-						}
-						String jsonText = ((TextMessage)message).getText();
-						if (jsonText == null) {
-							return null;
-						}
-						return objectMapper.deserialize(jsonText, responseType);
-					} catch (JMSException e) {
-						throw new JMSServiceException(e);
-					}
-				}
+	/**
+	 * Releases the reply resources of a failed call before its session is discarded. The temporary
+	 * queue would otherwise live as long as the pooled connection shared with other sessions.
+	 */
+	private void invalidateReplyResources(JMSPooledSession pooledSession, MessageConsumer consumer, TemporaryQueue replyTo) {
+		JMSResourceHousekeeper.close(consumer);
+		if (replyTo != null) {
+			try {
+				replyTo.delete();
+			} catch (JMSException | RuntimeException e) {
+				// a broken connection takes its temporary queues with it
+			}
+		}
+		connectionPool.invalidate(pooledSession);
+	}
 
-				@Override
-				public void close() {
-					if (closed) {
-						return;
-					}
-					JMSResourceHousekeeper.close(jmsConsumer);
-					JMSResourceHousekeeper.close(jmsResources);
-					closed = true;
-				}
-			};
-			JMSResourceHousekeeper.close(timeout, future);
-			return future;
+	private void setMessageProperties(Map<String, Object> messageProperties, Message message) {
+		if (messageProperties != null) {
+			JMSProperties jmsProperties = new JMSProperties(message);
+			jmsProperties.setProperties(messageProperties);
+		}
+	}
+
+	/**
+	 * Converts a reply message into the response object, reply messages carrying an ERROR property
+	 * are reported as {@link ExecutionException}.
+	 */
+	T readReply(Message message) throws ExecutionException {
+		try {
+			String error = message.getStringProperty("ERROR");
+			if (error != null) {
+				metrics.increment(Event.ERROR);
+				throw new ExecutionException(error, null);
+			}
+			if (responseType == Void.class) {
+				// if void is defined no body will be deserialized, just an reply ACK
+				return null;
+			}
+			long start = System.nanoTime();
+			T reply = JMSMessageBody.read(message, objectMapper, responseType);
+			metrics.record(Phase.DESERIALIZE, System.nanoTime() - start);
+			return reply;
 		} catch (JMSException e) {
 			throw new JMSServiceException(e);
 		}
 	}
 
-	private void send(Destination destination, Session jmsSession, TextMessage textMessage) throws JMSException {
-		try (JMSCloseable<MessageProducer> sender = JMSCloseable.wrap(jmsSession.createProducer(destination))) {
-			sender.get().send(destination, textMessage);
+	/**
+	 * Adds a chunk of a reply to its chunk group.
+	 *
+	 * @return the reply once its last chunk was added, otherwise null
+	 */
+	JMSChunking.Assembly assemble(Message chunk) {
+		try {
+			return JMSChunking.assemble(chunk, objectMapper, responseType == Void.class ? null : responseType);
+		} catch (JMSException e) {
+			throw new JMSServiceException(e);
+		}
+	}
+
+	/**
+	 * Converts a reply assembled from chunks into the response object.
+	 */
+	T readReply(JMSChunking.Assembly assembly) {
+		long start = System.nanoTime();
+		T reply = assembly.read();
+		metrics.record(Phase.DESERIALIZE, System.nanoTime() - start);
+		return reply;
+	}
+
+	private JMSReplyFuture<T> createReplyFuture(final JMSPooledSession pooledSession, final Message callerMessage, final TemporaryQueue replyTo) throws JMSException {
+		final JMSCloseable<MessageConsumer> jmsConsumer = JMSCloseable.wrap(pooledSession.getSession().createConsumer(replyTo));
+		
+		// the reply is delivered by the session's own dispatch thread which must not close it, so the release is deferred
+		final JMSReplyFuture<T> future = new JMSReplyFuture<>(callerMessage.getJMSMessageID(), this, timeout, () -> {
+			JMSResourceHousekeeper.close(jmsConsumer);
+			releaseReplyResources(pooledSession, replyTo);
+		}, true);
+		try {
+			jmsConsumer.get().setMessageListener(future::complete);
+		} catch (JMSException | RuntimeException e) {
+			JMSResourceHousekeeper.close(jmsConsumer);
+			throw e;
 		}
+		future.scheduleExpiry();
+		return future;
 	}
 
 }
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies in nanoseconds with a fixed relative precision.
+ *
+ * Like an HDR histogram, every power of two is divided into {@value #SUB_BUCKETS} linear buckets,
+ * so a recorded value is reported with an error of less than 1 / {@value #SUB_BUCKETS}. Recording is
+ * one atomic increment plus the updates of count, sum and maximum, the memory is fixed at about 15 KB.
+ *
+ * @author sso
+ */
+public class JMSLatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		buckets.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		long currentMax;
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+			// retry, another thread recorded a new maximum
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * @param percentile between 0 and 100, e.g. 99.9
+	 * @return the highest value of the bucket the percentile falls into, at most the maximum, 0 if empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			total += buckets.get(i);
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " mean=" + (long) getMean() + " p50=" + getValueAtPercentile(50) + " p99=" + getValueAtPercentile(99)
+				+ " p99.9=" + getValueAtPercentile(99.9) + " max=" + getMax();
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+}
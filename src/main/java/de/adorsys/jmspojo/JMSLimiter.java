@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+/**
+ * Limits the calls of service proxies. A call acquires a permit before its request is sent and
+ * releases it once its reply arrived, failed or the call was closed. Fire and forget calls and
+ * calls answered by a stream release their permit once the request is sent, without a round trip
+ * time.
+ *
+ * @see JMSAdaptiveLimiter
+ * @see JMSRateLimiter
+ */
+public interface JMSLimiter {
+
+	/**
+	 * Waits briefly for a permit if the limit is exceeded.
+	 *
+	 * @throws JMSServiceException if no permit is available in time
+	 */
+	void acquire();
+
+	/**
+	 * @param roundTripNanos the time from acquiring the permit to the end of the call
+	 */
+	void release(long roundTripNanos);
+
+	/**
+	 * Releases the permit of a call without a round trip, like a fire and forget call, a call
+	 * answered by a stream or a request which could not be sent.
+	 */
+	void release();
+
+}
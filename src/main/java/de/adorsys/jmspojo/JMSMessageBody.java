@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageEOFException;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+/**
+ * Writes and reads message bodies with a {@link JMSBodyMapper}. Binary mappers write
+ * {@link BytesMessage}s, text mappers {@link TextMessage}s. Both message types are readable
+ * with any mapper, text is written and read as UTF-8 bytes where bytes are needed. This is the
+ * only place telling text and binary mappers apart.
+ */
+final class JMSMessageBody {
+
+	private JMSMessageBody() {
+	}
+
+	static Message createMessage(Session session, JMSBodyMapper objectMapper, Object data) throws JMSException {
+		return createMessage(session, objectMapper, data, null);
+	}
+
+	/**
+	 * @param compression compresses bodies above its threshold, may be null
+	 */
+	static Message createMessage(Session session, JMSBodyMapper objectMapper, Object data, JMSCompression compression) throws JMSException {
+		if (compression != null && data != null) {
+			return createCompressibleMessage(session, objectMapper, data, compression);
+		}
+		Message message;
+		JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+		if (binaryMapper != null) {
+			BytesMessage bytesMessage = session.createBytesMessage();
+			if (data != null) {
+				binaryMapper.serialize(data, new BytesMessageOutputStream(bytesMessage));
+			}
+			message = bytesMessage;
+		} else {
+			TextMessage textMessage = session.createTextMessage();
+			if (data != null) {
+				textMessage.setText(text(objectMapper).serialize(data));
+			}
+			message = textMessage;
+		}
+		setContentType(message, objectMapper);
+		return message;
+	}
+
+	/**
+	 * Bodies are serialized into a pooled buffer first, to know their size before they are written.
+	 * Text is written as UTF-8, a text body below the threshold is decoded again for its TextMessage.
+	 */
+	private static Message createCompressibleMessage(Session session, JMSBodyMapper objectMapper, Object data, JMSCompression compression) throws JMSException {
+		JMSCompression.Codec codec = JMSCompression.borrow();
+		try {
+			write(objectMapper, data, codec.body);
+			Message message;
+			if (compression.isCompressing(codec.body.size)) {
+				BytesMessage bytesMessage = session.createBytesMessage();
+				compression.write(codec.body.data, codec.body.size, bytesMessage);
+				message = bytesMessage;
+			} else if (isBinary(objectMapper)) {
+				BytesMessage bytesMessage = session.createBytesMessage();
+				bytesMessage.writeBytes(codec.body.data, 0, codec.body.size);
+				message = bytesMessage;
+			} else {
+				message = session.createTextMessage(new String(codec.body.data, 0, codec.body.size, StandardCharsets.UTF_8));
+			}
+			setContentType(message, objectMapper);
+			return message;
+		} finally {
+			JMSCompression.release(codec);
+		}
+	}
+
+	/**
+	 * Creates the message of a body serialized before, a String of a text mapper or the bytes of a binary mapper.
+	 *
+	 * @param compression compresses bodies above its threshold, may be null
+	 */
+	static Message createSerializedMessage(Session session, JMSBodyMapper objectMapper, Object body, JMSCompression compression) throws JMSException {
+		Message message;
+		if (body instanceof byte[]) {
+			byte[] bytes = (byte[]) body;
+			BytesMessage bytesMessage = session.createBytesMessage();
+			if (compression != null && compression.isCompressing(bytes.length)) {
+				compression.write(bytes, bytes.length, bytesMessage);
+			} else {
+				bytesMessage.writeBytes(bytes);
+			}
+			message = bytesMessage;
+		} else if (body != null && compression != null && compression.isCompressing(((String) body).length())) {
+			// compressed text is sent as bytes, readers decode it as UTF-8 like any bytes message of a text mapper
+			byte[] bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+			BytesMessage bytesMessage = session.createBytesMessage();
+			compression.write(bytes, bytes.length, bytesMessage);
+			message = bytesMessage;
+		} else if (binary(objectMapper) != null) {
+			message = session.createBytesMessage();
+		} else {
+			TextMessage textMessage = session.createTextMessage();
+			textMessage.setText((String) body);
+			message = textMessage;
+		}
+		setContentType(message, objectMapper);
+		return message;
+	}
+
+	/**
+	 * Serializes a body before it is sent, for later use with {@link #createSerializedMessage}.
+	 *
+	 * @return the String of a text mapper or the bytes of a binary mapper, null for null
+	 */
+	static Object serialize(JMSBodyMapper objectMapper, Object data) {
+		if (data == null) {
+			return null;
+		}
+		JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+		if (binaryMapper == null) {
+			return text(objectMapper).serialize(data);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		binaryMapper.serialize(data, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes the serialized body, the text of text mappers as UTF-8.
+	 */
+	static void write(JMSBodyMapper objectMapper, Object data, OutputStream out) {
+		JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+		if (binaryMapper != null) {
+			binaryMapper.serialize(data, out);
+			return;
+		}
+		try {
+			text(objectMapper).serializeUtf8(data, out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads a body of bytes, text mappers read it as UTF-8.
+	 */
+	static <T> T read(JMSBodyMapper objectMapper, InputStream in, Type type) throws IOException {
+		JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+		if (binaryMapper != null) {
+			return binaryMapper.deserialize(in, type);
+		}
+		JMSCompression.Buffer text = new JMSCompression.Buffer();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			text.write(buffer, 0, read);
+		}
+		return text(objectMapper).deserializeUtf8(text.data, 0, text.size, type);
+	}
+
+	/**
+	 * Reads a body of text, binary mappers read its UTF-8 bytes.
+	 */
+	private static <T> T read(JMSBodyMapper objectMapper, String text, Type type) {
+		if (objectMapper instanceof JMSObjectMapper) {
+			return ((JMSObjectMapper) objectMapper).deserialize(text, type);
+		}
+		return binary(objectMapper).deserialize(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), type);
+	}
+
+	static boolean isBinary(JMSBodyMapper objectMapper) {
+		return binary(objectMapper) != null;
+	}
+
+	/**
+	 * @return the mapper if it writes bytes, null if it writes text
+	 */
+	private static JMSBinaryObjectMapper binary(JMSBodyMapper objectMapper) {
+		if (objectMapper instanceof JMSBinaryObjectMapper) {
+			return (JMSBinaryObjectMapper) objectMapper;
+		}
+		text(objectMapper);
+		return null;
+	}
+
+	private static JMSObjectMapper text(JMSBodyMapper objectMapper) {
+		if (!(objectMapper instanceof JMSObjectMapper)) {
+			throw new JMSServiceException("mapper " + objectMapper.getClass().getName() + " is neither a "
+					+ JMSObjectMapper.class.getSimpleName() + " nor a " + JMSBinaryObjectMapper.class.getSimpleName());
+		}
+		return (JMSObjectMapper) objectMapper;
+	}
+
+	static void setContentType(Message message, JMSBodyMapper objectMapper) throws JMSException {
+		if (objectMapper.getContentType() != null) {
+			message.setStringProperty(JMSBodyMapper.CONTENT_TYPE_PROPERTY, objectMapper.getContentType());
+		}
+	}
+
+	/**
+	 * @return the content type of the message, null for messages of senders not setting it
+	 */
+	static String getContentType(Message message) throws JMSException {
+		return message.getStringProperty(JMSBodyMapper.CONTENT_TYPE_PROPERTY);
+	}
+
+	/**
+	 * @return the deserialized body, null for an empty body
+	 */
+	static <T> T read(Message message, JMSBodyMapper objectMapper, Type type) throws JMSException {
+		if (message instanceof TextMessage) {
+			String text = ((TextMessage) message).getText();
+			return text != null ? read(objectMapper, text, type) : null;
+		}
+		if (message instanceof BytesMessage) {
+			BytesMessage bytesMessage = (BytesMessage) message;
+			bytesMessage.reset();
+			if (bytesMessage.getBodyLength() == 0) {
+				return null;
+			}
+			if (bytesMessage.propertyExists(JMSCompression.CONTENT_ENCODING_PROPERTY)) {
+				return readCompressed(bytesMessage, objectMapper, type);
+			}
+			JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+			if (binaryMapper != null) {
+				return binaryMapper.deserialize(new BytesMessageInputStream(bytesMessage), type);
+			}
+			byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+			bytesMessage.readBytes(bytes);
+			return text(objectMapper).deserializeUtf8(bytes, 0, bytes.length, type);
+		}
+		throw new JMSServiceException("recived jms message is neither of type text nor bytes " + message);
+	}
+
+	private static <T> T readCompressed(BytesMessage message, JMSBodyMapper objectMapper, Type type) throws JMSException {
+		JMSCompression.Codec codec = JMSCompression.read(message);
+		try {
+			JMSCompression.Buffer body = codec.body;
+			JMSBinaryObjectMapper binaryMapper = binary(objectMapper);
+			if (binaryMapper != null) {
+				return binaryMapper.deserialize(new ByteArrayInputStream(body.data, 0, body.size), type);
+			}
+			return text(objectMapper).deserializeUtf8(body.data, 0, body.size, type);
+		} finally {
+			JMSCompression.release(codec);
+		}
+	}
+
+	private static class BytesMessageOutputStream extends OutputStream {
+		private final BytesMessage message;
+
+		BytesMessageOutputStream(BytesMessage message) {
+			this.message = message;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			try {
+				message.writeByte((byte) b);
+			} catch (JMSException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			try {
+				message.writeBytes(b, off, len);
+			} catch (JMSException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private static class BytesMessageInputStream extends InputStream {
+		private final BytesMessage message;
+		private byte[] buffer;
+
+		BytesMessageInputStream(BytesMessage message) {
+			this.message = message;
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return message.readUnsignedByte();
+			} catch (MessageEOFException e) {
+				return -1;
+			} catch (JMSException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			try {
+				if (off == 0) {
+					return message.readBytes(b, len);
+				}
+				// BytesMessage reads to the start of an array only
+				if (buffer == null || buffer.length < len) {
+					buffer = new byte[len];
+				}
+				int read = message.readBytes(buffer, len);
+				if (read > 0) {
+					System.arraycopy(buffer, 0, b, off, read);
+				}
+				return read;
+			} catch (JMSException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+}
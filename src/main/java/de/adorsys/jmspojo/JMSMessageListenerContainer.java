@@ -0,0 +1,391 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Standalone listener container which feeds the messages of one destination into a
+ * {@link JMSMessageListenerServiceAdapter}, for applications without an MDB container.
+ *
+ * The container keeps one connection and between <code>minConcurrency</code> and
+ * <code>maxConcurrency</code> consumers, each with its own session and receive loop. A new
+ * consumer is started as soon as all consumers are busy, a consumer which has not received
+ * a message for {@value #IDLE_RECEIVES_BEFORE_STOP} receive timeouts stops again. The receive
+ * loops run on dedicated threads, on virtual threads or on a given executor; a bounded executor
+ * limits the concurrency to its number of threads.
+ *
+ * Replies are sent through the session of the consumer, within its transaction if the session
+ * is transacted. Streamed replies are sent through a non-transacted session of the adapter's
+ * pool instead, so the caller does not wait for the end of the stream.
+ *
+ * A broken connection stops all consumers, the container reconnects after the recovery interval
+ * and starts <code>minConcurrency</code> consumers on the new connection, no matter how many
+ * receive loops of the broken one are still winding down.
+ *
+ * @author sso
+ */
+public class JMSMessageListenerContainer implements ExceptionListener, AutoCloseable {
+
+	private static final int IDLE_RECEIVES_BEFORE_STOP = 5;
+
+	private final ConnectionFactory connectionFactory;
+	private final Destination destination;
+	private final JMSMessageListenerServiceAdapter<?> adapter;
+	private final int minConcurrency;
+	private final int maxConcurrency;
+	private final AtomicInteger activeConsumers = new AtomicInteger();
+	private final AtomicInteger threadCount = new AtomicInteger();
+	private long receiveTimeout = 1000;
+	private long recoveryInterval = 5000;
+	private boolean sessionTransacted;
+	private boolean virtualThreads;
+	private Executor executor;
+	private ExecutorService ownedExecutor;
+	private Connection connection;
+	// all receive loops, including those of a broken connection which have not ended yet
+	private int consumers;
+	// the receive loops of the current connection
+	private int connectionConsumers;
+	private boolean running;
+
+	/**
+	 * @param minConcurrency number of consumers kept while the destination is idle, at least 1
+	 * @param maxConcurrency maximum number of consumers processing messages in parallel
+	 */
+	public JMSMessageListenerContainer(ConnectionFactory connectionFactory, Destination destination,
+			JMSMessageListenerServiceAdapter<?> adapter, int minConcurrency, int maxConcurrency) {
+		super();
+		if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+			throw new IllegalArgumentException("minConcurrency must be at least 1 and not greater than maxConcurrency");
+		}
+		this.connectionFactory = connectionFactory;
+		this.destination = destination;
+		this.adapter = adapter;
+		this.minConcurrency = minConcurrency;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public JMSMessageListenerContainer(ConnectionFactory connectionFactory, Destination destination,
+			JMSMessageListenerServiceAdapter<?> adapter, int concurrency) {
+		this(connectionFactory, destination, adapter, concurrency, concurrency);
+	}
+
+	/**
+	 * Runs the receive loops on the given executor instead of dedicated threads. The executor
+	 * belongs to the caller and is not shut down by the container.
+	 */
+	public synchronized void setExecutor(Executor executor) {
+		assertNotStarted();
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs each receive loop on its own virtual thread, receivers blocking on I/O then do not
+	 * hold a platform thread. Requires Java 21.
+	 */
+	public synchronized void setVirtualThreads(boolean virtualThreads) {
+		assertNotStarted();
+		if (virtualThreads && !isVirtualThreadsSupported()) {
+			throw new JMSServiceException("virtual threads are not supported by this java runtime");
+		}
+		this.virtualThreads = virtualThreads;
+	}
+
+	public static boolean isVirtualThreadsSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param receiveTimeout time in ms a consumer waits for a message before it checks whether to stop
+	 */
+	public synchronized void setReceiveTimeout(long receiveTimeout) {
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	/**
+	 * @param recoveryInterval time in ms to wait before reconnecting after a connection failure
+	 */
+	public synchronized void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	/**
+	 * Receives each message and sends its reply in one local transaction. A receiver method which
+	 * fails is answered with an error reply, which is committed like any other reply. A message
+	 * is rolled back and redelivered by the broker only if it cannot be read or its reply cannot
+	 * be sent.
+	 */
+	public synchronized void setSessionTransacted(boolean sessionTransacted) {
+		assertNotStarted();
+		this.sessionTransacted = sessionTransacted;
+	}
+
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		if (executor == null) {
+			ownedExecutor = createExecutor();
+		}
+		running = true;
+		connect();
+	}
+
+	private ExecutorService createExecutor() {
+		if (virtualThreads) {
+			try {
+				// looked up reflectively, the library is still compiled for Java 8
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+				throw new JMSServiceException("virtual threads are not supported by this java runtime", e);
+			}
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "jmspojo-listener-" + destination + "-" + threadCount.incrementAndGet());
+			}
+		});
+	}
+
+	private void assertNotStarted() {
+		if (running) {
+			throw new IllegalStateException("listener container is already started");
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return the number of consumers receiving from the destination
+	 */
+	public synchronized int getConsumerCount() {
+		return connectionConsumers;
+	}
+
+	/**
+	 * @return the number of consumers currently processing a message
+	 */
+	public int getActiveCount() {
+		return activeConsumers.get();
+	}
+
+	/**
+	 * Stops receiving, waits until the messages in progress are processed and closes the connection.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			try {
+				// every receive loop ends at the latest one receive timeout after its current message
+				while (consumers > 0) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			JMSResourceHousekeeper.close(connection);
+			connection = null;
+			if (ownedExecutor != null) {
+				ownedExecutor.shutdown();
+				ownedExecutor = null;
+			}
+		}
+	}
+
+	/**
+	 * A broken connection ends all receive loops, a new connection is opened after the recovery interval.
+	 */
+	@Override
+	public void onException(JMSException exception) {
+		recover(null);
+	}
+
+	private synchronized void connect() {
+		if (!running || connection != null) {
+			return;
+		}
+		Connection c = null;
+		try {
+			c = connectionFactory.createConnection();
+			c.setExceptionListener(this);
+			c.start();
+			connection = c;
+		} catch (JMSException | RuntimeException e) {
+			e.printStackTrace();
+			JMSResourceHousekeeper.close(c);
+			scheduleRecovery();
+			return;
+		}
+		// loops of a broken connection still winding down do not count
+		for (int i = connectionConsumers; i < minConcurrency; i++) {
+			startConsumer();
+		}
+	}
+
+	/**
+	 * @param failed the connection a consumer failed on, null for the current connection
+	 */
+	private synchronized void recover(Connection failed) {
+		if (connection == null || (failed != null && failed != connection)) {
+			// already recovering
+			return;
+		}
+		JMSResourceHousekeeper.close(connection);
+		connection = null;
+		connectionConsumers = 0;
+		scheduleRecovery();
+	}
+
+	private void scheduleRecovery() {
+		if (running) {
+			JMSResourceHousekeeper.schedule(recoveryInterval, this::connect);
+		}
+	}
+
+	private void startConsumer() {
+		consumers++;
+		connectionConsumers++;
+		try {
+			(executor != null ? executor : ownedExecutor).execute(new Consumer(connection));
+		} catch (RejectedExecutionException e) {
+			e.printStackTrace();
+			consumers--;
+			connectionConsumers--;
+		}
+	}
+
+	/**
+	 * Called by a consumer which received a message, starts another one if all are busy.
+	 */
+	private synchronized void scaleUp() {
+		if (running && connection != null && connectionConsumers < maxConcurrency && activeConsumers.get() >= connectionConsumers) {
+			startConsumer();
+		}
+	}
+
+	private synchronized boolean stopIdleConsumer(Connection consumerConnection) {
+		if (connection == consumerConnection && connectionConsumers <= minConcurrency) {
+			return false;
+		}
+		consumerStopped(consumerConnection);
+		return true;
+	}
+
+	private synchronized boolean isReceiving(Connection consumerConnection) {
+		return running && connection == consumerConnection;
+	}
+
+	private synchronized void consumerStopped(Connection consumerConnection) {
+		consumers--;
+		if (connection == consumerConnection) {
+			connectionConsumers--;
+		}
+		notifyAll();
+	}
+
+	private class Consumer implements Runnable {
+
+		private final Connection consumerConnection;
+
+		Consumer(Connection consumerConnection) {
+			this.consumerConnection = consumerConnection;
+		}
+
+		@Override
+		public void run() {
+			Session session = null;
+			boolean stoppedIdle = false;
+			try {
+				session = consumerConnection.createSession(sessionTransacted, sessionTransacted ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+				MessageConsumer consumer = session.createConsumer(destination);
+				// replies are sent through the consumer's session with one anonymous producer
+				MessageProducer replyProducer = session.createProducer(null);
+				int idleReceives = 0;
+				while (isReceiving(consumerConnection)) {
+					Message message = consumer.receive(receiveTimeout);
+					if (message == null) {
+						if (++idleReceives >= IDLE_RECEIVES_BEFORE_STOP && stopIdleConsumer(consumerConnection)) {
+							stoppedIdle = true;
+							return;
+						}
+						continue;
+					}
+					idleReceives = 0;
+					process(session, replyProducer, message);
+				}
+			} catch (JMSException | RuntimeException e) {
+				if (isReceiving(consumerConnection)) {
+					e.printStackTrace();
+					recover(consumerConnection);
+				}
+			} finally {
+				JMSResourceHousekeeper.close(session);
+				if (!stoppedIdle) {
+					consumerStopped(consumerConnection);
+				}
+			}
+		}
+
+		private void process(Session session, MessageProducer replyProducer, Message message) throws JMSException {
+			activeConsumers.incrementAndGet();
+			try {
+				scaleUp();
+				adapter.onMessage(message, session, replyProducer);
+				if (sessionTransacted) {
+					session.commit();
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				if (sessionTransacted) {
+					session.rollback();
+				}
+			} finally {
+				activeConsumers.decrementAndGet();
+			}
+		}
+	}
+
+}
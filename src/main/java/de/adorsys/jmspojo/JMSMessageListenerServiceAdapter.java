@@ -16,47 +16,235 @@
 package de.adorsys.jmspojo;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.BaseStream;
 
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
-import javax.jms.TextMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
 
+import de.adorsys.jmspojo.JMSConnectionPool.JMSPooledSession;
+import de.adorsys.jmspojo.JMSMetrics.Event;
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+import de.adorsys.jmspojo.JMSMetrics.Phase;
+
+/**
+ * Calls the {@link JMSMessageReceiver} methods of a POJO with the received messages and sends
+ * their replies.
+ *
+ * Messages are routed by their {@link JMSMessageReceiver#OPERATION_PROPERTY} through a dispatch
+ * table built once per adapter. A POJO with a single receiver method receives all messages.
+ */
 public class JMSMessageListenerServiceAdapter<T> {
 	
-	private final JMSMessageMethodCall jmMessageMethodCall;
-	private final JMSObjectMapper objectMapper;
-	private JMSJavaFutureAdapter<Void> jmsFutureCallAdapter;
+	private static final Map<String, Object> END_OF_STREAM = Collections.<String, Object>singletonMap(JMSReplyStream.END_OF_STREAM_PROPERTY, true);
 	
-	JMSMessageListenerServiceAdapter(JMSMessageMethodCall jmMessageMethodCall, JMSObjectMapper objectMapper,
-			ConnectionFactory connectionFactory) {
+	private final Map<String, JMSMessageMethodCall> methodCalls;
+	private final JMSBodyMapper objectMapper;
+	private final Map<String, JMSBodyMapper> objectMappers = new HashMap<>();
+	private volatile JMSConnectionPool connectionPool;
+	private volatile JMSMetrics metrics = JMSMetrics.NOOP;
+	private volatile JMSCompression compression;
+	private volatile JMSChunking chunking;
+	private volatile JMSDuplicateDetector duplicateDetector;
+	private volatile Map<String, JMSReceiver> receivers;
+	private volatile JMSReceiver singleReceiver;
+	private volatile Map<String, JMSJavaFutureAdapter<Void>> errorReplyAdapters;
+	
+	JMSMessageListenerServiceAdapter(Map<String, JMSMessageMethodCall> methodCalls, JMSBodyMapper objectMapper,
+			ConnectionFactory connectionFactory, JMSBodyMapper... acceptedObjectMappers) {
 		super();
-		this.jmMessageMethodCall = jmMessageMethodCall;
+		this.methodCalls = methodCalls;
 		this.objectMapper = objectMapper;
-		jmsFutureCallAdapter = new JMSJavaFutureAdapter<>(objectMapper, connectionFactory, Void.class, 0);
+		this.connectionPool = JMSConnectionPool.unpooled(connectionFactory);
+		List<JMSBodyMapper> mappers = new ArrayList<>();
+		mappers.add(objectMapper);
+		mappers.addAll(Arrays.asList(acceptedObjectMappers));
+		for (JMSBodyMapper mapper : mappers) {
+			if (!objectMappers.containsKey(mapper.getContentType())) {
+				objectMappers.put(mapper.getContentType(), mapper);
+			}
+		}
+		createReceivers();
+	}
+	
+	/**
+	 * Records the deserialization and dispatch times of the received messages and the
+	 * serialization and send times of the replies, keyed by the receiver method.
+	 */
+	public void setMetrics(JMSMetrics metrics) {
+		this.metrics = metrics;
+		createReceivers();
+	}
+	
+	/**
+	 * Replies of {@link #onMessage(Message)} are sent with a session and a cached producer of the
+	 * pool instead of a new connection per reply. The pool belongs to the caller. Not needed with
+	 * connection factories pooling by themselves, like the one of an application server.
+	 */
+	public void setConnectionPool(JMSConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+		createReceivers();
+	}
+	
+	/**
+	 * Compresses the replies which reach the threshold of <code>compression</code>. Compressed
+	 * requests are decompressed whether this is set or not.
+	 */
+	public void setCompression(JMSCompression compression) {
+		this.compression = compression;
+		createReceivers();
+	}
+	
+	/**
+	 * Sends the replies which exceed the chunk size of <code>chunking</code> in chunks. Chunked
+	 * requests are reassembled whether this is set or not.
+	 */
+	public void setChunking(JMSChunking chunking) {
+		this.chunking = chunking;
+		createReceivers();
+	}
+	
+	/**
+	 * Answers redelivered messages already processed with the reply of their first delivery
+	 * instead of calling the receiver again.
+	 */
+	public void setDuplicateDetector(JMSDuplicateDetector duplicateDetector) {
+		this.duplicateDetector = duplicateDetector;
+	}
+	
+	private void createReceivers() {
+		Map<String, JMSReceiver> dispatchTable = new HashMap<>();
+		for (Map.Entry<String, JMSMessageMethodCall> methodCall : methodCalls.entrySet()) {
+			JMSMethodMetrics methodMetrics = metrics.getMethodMetrics(methodCall.getValue().getServiceType(), methodCall.getValue().getMethod());
+			Map<String, JMSBodyMapper> methodMappers = bindObjectMappers(methodCall.getValue());
+			dispatchTable.put(methodCall.getKey(), new JMSReceiver(methodCall.getValue(), methodMetrics, methodMappers,
+					methodMappers.get(objectMapper.getContentType()), createReplyAdapters(methodMappers, methodMetrics)));
+		}
+		receivers = dispatchTable;
+		singleReceiver = dispatchTable.size() == 1 ? dispatchTable.values().iterator().next() : null;
+		errorReplyAdapters = createReplyAdapters(objectMappers, JMSMethodMetrics.NOOP);
+	}
+	
+	/**
+	 * @return the mappers bound to the body and reply types of the method, by content type
+	 */
+	private Map<String, JMSBodyMapper> bindObjectMappers(JMSMessageMethodCall methodCall) {
+		Map<String, JMSBodyMapper> mappers = new HashMap<>();
+		for (Map.Entry<String, JMSBodyMapper> mapper : objectMappers.entrySet()) {
+			mappers.put(mapper.getKey(), mapper.getValue().bind(methodCall.getBodyType(), methodCall.getReplyType()));
+		}
+		return mappers;
+	}
+	
+	private Map<String, JMSJavaFutureAdapter<Void>> createReplyAdapters(Map<String, JMSBodyMapper> mappers, JMSMethodMetrics metrics) {
+		Map<String, JMSJavaFutureAdapter<Void>> adapters = new HashMap<>();
+		for (JMSBodyMapper mapper : mappers.values()) {
+			// replies are sent fire and forget, they do not expect a reply themselves
+			JMSJavaFutureAdapter<Void> replyAdapter = new JMSJavaFutureAdapter<Void>(mapper, connectionPool, null, null, 0, metrics);
+			replyAdapter.setCompression(compression);
+			replyAdapter.setChunking(chunking);
+			adapters.put(mapper.getContentType(), replyAdapter);
+		}
+		return adapters;
 	}
 
 	public void onMessage(Message m) {
-		String text;
+		onMessage(m, null, null);
+	}
+	
+	/**
+	 * Processes a message received by the consumer of <code>session</code>. The reply is created
+	 * with that session and sent with <code>replyProducer</code>, an anonymous producer kept along
+	 * with the session, so no connection is opened per reply. On a transacted session the reply is
+	 * sent within the transaction of the received message.
+	 */
+	public void onMessage(Message m, Session session, MessageProducer replyProducer) {
+		JMSReceiver receiver;
+		boolean expired;
+		try {
+			receiver = resolveReceiver(m);
+			if (receiver == null) {
+				rejectUnknownOperation(m, session, replyProducer);
+				return;
+			}
+			expired = isExpired(m);
+		} catch (JMSException e) {
+			throw new JMSServiceException("problemm accessing the message", e);
+		}
+		JMSMessageMethodCall jmMessageMethodCall = receiver.methodCall;
+		JMSMethodMetrics metrics = receiver.metrics;
+		if (expired) {
+			// nobody waits for the reply anymore
+			metrics.increment(Event.EXPIRED);
+			discardChunks(m);
+			return;
+		}
+		Object deserialized = null;
+		JMSBodyMapper messageObjectMapper;
 		Destination jmsReplyTo;
+		String correlationId;
+		JMSDuplicateDetector detector = duplicateDetector;
+		String duplicateKey = null;
 		try {
-			text = resolveMessageText(m);
 			jmsReplyTo = m.getJMSReplyTo();
+			// replies carry the caller's correlation id or, as usual in JMS, the request message id
+			correlationId = m.getJMSCorrelationID() != null ? m.getJMSCorrelationID() : m.getJMSMessageID();
+			// duplicates are answered before their body is read, chunks are processed with the last one
+			if (detector != null && JMSChunking.isLastChunk(m)) {
+				duplicateKey = detector.getKey(m);
+			}
+			if (duplicateKey != null) {
+				JMSDuplicateDetector.Processed first = detector.register(duplicateKey);
+				if (first != null) {
+					replayDuplicate(receiver, m, session, replyProducer, first, jmsReplyTo, correlationId);
+					return;
+				}
+			}
 		} catch (JMSException e) {
 			throw new JMSServiceException("problemm accessing the message", e);
 		}
-		
-		Object deserialized = null;
-		if (jmMessageMethodCall.getBodyType() != null && text != null) {
-			deserialized = objectMapper.deserialize(text, jmMessageMethodCall.getBodyType());
+		try {
+			messageObjectMapper = resolveObjectMapper(receiver, m);
+			JMSChunking.Assembly assembly = null;
+			if (JMSChunking.isChunk(m)) {
+				// the receiver is called with the last chunk of the request
+				assembly = JMSChunking.assemble(m, messageObjectMapper, jmMessageMethodCall.getBodyType());
+				if (assembly == null) {
+					return;
+				}
+			}
+			metrics.increment(Event.CALL);
+			if (jmMessageMethodCall.getBodyType() != null) {
+				long start = System.nanoTime();
+				deserialized = assembly != null ? assembly.read() : JMSMessageBody.read(m, messageObjectMapper, jmMessageMethodCall.getBodyType());
+				metrics.record(Phase.DESERIALIZE, System.nanoTime() - start);
+			}
+		} catch (JMSException | RuntimeException e) {
+			if (duplicateKey != null) {
+				// an unreadable message is not processed, its redelivery is read again
+				detector.failed(duplicateKey);
+			}
+			if (e instanceof JMSException) {
+				throw new JMSServiceException("problemm accessing the message", (JMSException) e);
+			}
+			throw (RuntimeException) e;
 		}
 		
 		Map<String, Object> messageHeaders = null;
@@ -64,65 +252,252 @@ public class JMSMessageListenerServiceAdapter<T> {
 			messageHeaders = new JMSProperties(m).toMap();
 		}
 		
+		// replies are written in the format of the request, the caller may not know any other
+		JMSJavaFutureAdapter<Void> jmsFutureCallAdapter = receiver.replyAdapters.get(messageObjectMapper.getContentType());
 		try {
+			long start = System.nanoTime();
 			Object returnObject = jmMessageMethodCall.call(deserialized, messageHeaders);
+			metrics.record(Phase.DISPATCH, System.nanoTime() - start);
+			if (duplicateKey != null) {
+				// streams are consumed by the first reply
+				detector.completed(duplicateKey, jmMessageMethodCall.isReturningVoid() ? null : returnObject, !jmMessageMethodCall.isReturningStream());
+			}
 			if (jmsReplyTo == null) {
+				if (returnObject instanceof AutoCloseable) {
+					JMSResourceHousekeeper.close((AutoCloseable) returnObject);
+				}
 				return;
 			}
-			if (jmMessageMethodCall.isReturningVoid()) {
-				jmsFutureCallAdapter.send(jmsReplyTo, Collections.<String, Object>emptyMap(), null);
+			if (jmMessageMethodCall.isReturningStream()) {
+				sendReplyStream(jmsFutureCallAdapter, session, replyProducer, jmsReplyTo, returnObject, correlationId);
+			} else if (jmMessageMethodCall.isReturningVoid()) {
+				sendReply(jmsFutureCallAdapter, session, replyProducer, jmsReplyTo, Collections.<String, Object>emptyMap(), null, correlationId);
 			} else {
-				jmsFutureCallAdapter.send(jmsReplyTo, Collections.<String, Object>emptyMap(), returnObject);
+				sendReply(jmsFutureCallAdapter, session, replyProducer, jmsReplyTo, Collections.<String, Object>emptyMap(), returnObject, correlationId);
 			}
 		} catch (Throwable e) {
 			e.printStackTrace();
+			metrics.increment(Event.ERROR);
+			if (duplicateKey != null) {
+				// the redelivery is processed again
+				detector.failed(duplicateKey);
+			}
 			if (jmsReplyTo == null) {
 				return;
 			}
 			HashMap<String, Object> jmsProperties = new HashMap<>();
 			jmsProperties.put("ERROR", e.getClass().getName() + ": " + e.getMessage());
-			jmsFutureCallAdapter.send(jmsReplyTo, jmsProperties, null);
+			sendReply(jmsFutureCallAdapter, session, replyProducer, jmsReplyTo, jmsProperties, null, correlationId);
 		}
 	}
-
-	private String resolveMessageText(Message m) throws JMSException {
-		if (!(m instanceof TextMessage)) {
-			throw new JMSServiceException("recived jms message is not of type text " + m);
+	
+	/**
+	 * Answers a duplicate with the reply of its first delivery, without reading its body. A
+	 * duplicate of a message still being processed is dropped, the first delivery replies.
+	 */
+	private void replayDuplicate(JMSReceiver receiver, Message m, Session session, MessageProducer replyProducer,
+			JMSDuplicateDetector.Processed first, Destination jmsReplyTo, String correlationId) throws JMSException {
+		receiver.metrics.increment(Event.CALL);
+		receiver.metrics.increment(Event.DUPLICATE);
+		if (JMSChunking.isChunk(m)) {
+			JMSChunking.discard(m);
 		}
-		TextMessage textMessage = (TextMessage) m;
-		String text = textMessage.getText();
-		return text;
+		if (jmsReplyTo == null || !first.isReplayable()) {
+			return;
+		}
+		JMSJavaFutureAdapter<Void> replyAdapter = receiver.replyAdapters.get(JMSMessageBody.getContentType(m));
+		if (replyAdapter == null) {
+			replyAdapter = receiver.replyAdapters.get(receiver.defaultMapper.getContentType());
+		}
+		sendReply(replyAdapter, session, replyProducer, jmsReplyTo, Collections.<String, Object>emptyMap(), first.getReply(), correlationId);
 	}
 	
+	private void sendReply(JMSJavaFutureAdapter<Void> jmsFutureCallAdapter, Session session, MessageProducer replyProducer,
+			Destination jmsReplyTo, Map<String, Object> jmsProperties, Object reply, String correlationId) {
+		if (session != null) {
+			jmsFutureCallAdapter.send(session, replyProducer, jmsReplyTo, jmsProperties, reply, correlationId);
+		} else {
+			jmsFutureCallAdapter.send(jmsReplyTo, jmsProperties, reply, correlationId);
+		}
+	}
+	
+	/**
+	 * Sends every element as its own reply, followed by a reply marking the end of the stream.
+	 * Without a consumer session, or if it is transacted, all replies share one non-transacted
+	 * session of the pool: within the transaction of the request the caller would not see any
+	 * element before the receiver has produced the last one. The replies of a request which is
+	 * rolled back afterwards have then already been delivered.
+	 */
+	private void sendReplyStream(JMSJavaFutureAdapter<Void> jmsFutureCallAdapter, Session session, MessageProducer replyProducer,
+			Destination jmsReplyTo, Object replies, String correlationId) throws JMSException {
+		Iterator<?> elements = replies instanceof BaseStream ? ((BaseStream<?, ?>) replies).iterator() : (Iterator<?>) replies;
+		JMSPooledSession pooledSession = null;
+		Session replySession = session;
+		MessageProducer producer = replyProducer;
+		try {
+			if (replySession == null || replySession.getTransacted()) {
+				pooledSession = connectionPool.borrow();
+				replySession = pooledSession.getSession();
+				producer = replySession.createProducer(null);
+			}
+			while (elements != null && elements.hasNext()) {
+				jmsFutureCallAdapter.send(replySession, producer, jmsReplyTo, Collections.<String, Object>emptyMap(), elements.next(), correlationId);
+			}
+			jmsFutureCallAdapter.send(replySession, producer, jmsReplyTo, END_OF_STREAM, null, correlationId);
+		} catch (JMSException | RuntimeException e) {
+			if (pooledSession != null) {
+				JMSResourceHousekeeper.close(producer);
+				connectionPool.invalidate(pooledSession);
+				pooledSession = null;
+			}
+			throw e;
+		} finally {
+			if (replies instanceof AutoCloseable) {
+				JMSResourceHousekeeper.close((AutoCloseable) replies);
+			}
+			if (pooledSession != null) {
+				JMSResourceHousekeeper.close(producer);
+				connectionPool.release(pooledSession);
+			}
+		}
+	}
+	
+	private static void discardChunks(Message m) {
+		try {
+			if (JMSChunking.isChunk(m)) {
+				JMSChunking.discard(m);
+			}
+		} catch (JMSException e) {
+			throw new JMSServiceException("problemm accessing the message", e);
+		}
+	}
+	
+	/**
+	 * @return true if the caller stopped waiting for the reply, false for messages without deadline
+	 */
+	private static boolean isExpired(Message m) throws JMSException {
+		if (!m.propertyExists(JMSMessageReceiver.DEADLINE_PROPERTY)) {
+			return false;
+		}
+		return m.getLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY) < System.currentTimeMillis();
+	}
+	
+	/**
+	 * A single receiver method receives all messages, otherwise the operation property selects it.
+	 */
+	private JMSReceiver resolveReceiver(Message m) throws JMSException {
+		JMSReceiver receiver = singleReceiver;
+		if (receiver != null) {
+			return receiver;
+		}
+		String operation = m.getStringProperty(JMSMessageReceiver.OPERATION_PROPERTY);
+		return operation != null ? receivers.get(operation) : null;
+	}
+	
+	/**
+	 * Answers a request without receiver method with an error reply, so the caller does not wait
+	 * for its timeout. A request without reply destination is rejected with an exception.
+	 */
+	private void rejectUnknownOperation(Message m, Session session, MessageProducer replyProducer) throws JMSException {
+		String operation = m.getStringProperty(JMSMessageReceiver.OPERATION_PROPERTY);
+		JMSServiceException e = new JMSServiceException("no receiver for operation " + operation + " of message " + m.getJMSMessageID());
+		Destination jmsReplyTo = m.getJMSReplyTo();
+		if (jmsReplyTo == null) {
+			throw e;
+		}
+		e.printStackTrace();
+		Map<String, JMSJavaFutureAdapter<Void>> adapters = errorReplyAdapters;
+		String contentType = JMSMessageBody.getContentType(m);
+		JMSJavaFutureAdapter<Void> jmsFutureCallAdapter = contentType != null && adapters.containsKey(contentType) ? adapters.get(contentType) : adapters.get(objectMapper.getContentType());
+		String correlationId = m.getJMSCorrelationID() != null ? m.getJMSCorrelationID() : m.getJMSMessageID();
+		HashMap<String, Object> jmsProperties = new HashMap<>();
+		jmsProperties.put("ERROR", e.getClass().getName() + ": " + e.getMessage());
+		sendReply(jmsFutureCallAdapter, session, replyProducer, jmsReplyTo, jmsProperties, null, correlationId);
+	}
+	
+	/**
+	 * Messages without a content type are read with the default mapper.
+	 */
+	private static JMSBodyMapper resolveObjectMapper(JMSReceiver receiver, Message m) throws JMSException {
+		String contentType = JMSMessageBody.getContentType(m);
+		if (contentType == null) {
+			return receiver.defaultMapper;
+		}
+		JMSBodyMapper mapper = receiver.mappers.get(contentType);
+		if (mapper == null) {
+			throw new JMSServiceException("unsupported content type " + contentType + " of message " + m.getJMSMessageID());
+		}
+		return mapper;
+	}
+
 	public static <T> JMSMessageListenerServiceAdapter<T> createAdapter(T service,  ConnectionFactory cf, JMSObjectMapper objectMapper) {
-		JMSMessageMethodCall jmsMessageMethodCall = null;
+		return createAdapter(service, cf, objectMapper, new JMSBodyMapper[0]);
+	}
+
+	/**
+	 * Creates an adapter accepting messages of several content types, for instance while the
+	 * producers migrate to a new format. Each request is read and replied to with the mapper of
+	 * its {@link JMSBodyMapper#CONTENT_TYPE_PROPERTY}, requests without one with <code>objectMapper</code>.
+	 * The mappers may write text or bytes.
+	 */
+	public static <T> JMSMessageListenerServiceAdapter<T> createAdapter(T service,  ConnectionFactory cf, JMSBodyMapper objectMapper, JMSBodyMapper... acceptedObjectMappers) {
+		Map<String, JMSMessageMethodCall> methodCalls = new HashMap<>();
 		
 		Method[] methods = service.getClass().getMethods();
 		for (Method method : methods) {
-			if (method.isAnnotationPresent(JMSMessageReceiver.class)) {
-				if (jmsMessageMethodCall != null) {
-					throw new JMSServiceException("more than one " + JMSMessageReceiver.class.getName() + " annotation found on class " + service.getClass().getName());
+			JMSMessageReceiver receiver = method.getAnnotation(JMSMessageReceiver.class);
+			if (receiver != null) {
+				String operation = receiver.operation().isEmpty() ? method.getName() : receiver.operation();
+				if (methodCalls.containsKey(operation)) {
+					throw new JMSServiceException("more than one " + JMSMessageReceiver.class.getName() + " for operation " + operation + " found on class " + service.getClass().getName());
 				}
-				jmsMessageMethodCall = new JMSMessageMethodCall(service, method);
+				methodCalls.put(operation, new JMSMessageMethodCall(service, method));
 			}
 		}
 		
-		if (jmsMessageMethodCall == null) {
+		if (methodCalls.isEmpty()) {
 			throw new JMSServiceException("no " + JMSMessageReceiver.class.getName() + " annotation found on class " + service.getClass().getName());
 		}
-		return new JMSMessageListenerServiceAdapter<T>(jmsMessageMethodCall, objectMapper, cf);
+		return new JMSMessageListenerServiceAdapter<T>(methodCalls, objectMapper, cf, acceptedObjectMappers);
+	}
+	
+	/**
+	 * A receiver method with its metrics and reply adapters.
+	 */
+	private static class JMSReceiver {
+		
+		private final JMSMessageMethodCall methodCall;
+		private final JMSMethodMetrics metrics;
+		private final Map<String, JMSBodyMapper> mappers;
+		private final JMSBodyMapper defaultMapper;
+		private final Map<String, JMSJavaFutureAdapter<Void>> replyAdapters;
+		
+		JMSReceiver(JMSMessageMethodCall methodCall, JMSMethodMetrics metrics, Map<String, JMSBodyMapper> mappers, JMSBodyMapper defaultMapper,
+				Map<String, JMSJavaFutureAdapter<Void>> replyAdapters) {
+			this.methodCall = methodCall;
+			this.metrics = metrics;
+			this.mappers = mappers;
+			this.defaultMapper = defaultMapper;
+			this.replyAdapters = replyAdapters;
+		}
 	}
 	
 	static class JMSMessageMethodCall {
 		
+		private static final MethodType CALL_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+		
+		private final Class<?> serviceType;
 		private final Method method;
-		private final Object service;
+		private final MethodHandle invoker;
 		private int msgHeaderMapIndex = -1;
 		private int msgBodyIndex = -1;
+		private Type bodyType;
+		private boolean primitiveBody;
+		private final Type replyType;
 		
 		public JMSMessageMethodCall(Object service, Method method) {
 			super();
-			this.service = service;
+			this.serviceType = service.getClass();
 			this.method = method;
 			Class<?>[] parameterTypes = method.getParameterTypes();
 			for (int i = 0; i < parameterTypes.length; i++) {
@@ -132,13 +507,73 @@ public class JMSMessageListenerServiceAdapter<T> {
 					msgBodyIndex = i;
 				}
 			}
+			if (msgBodyIndex != -1) {
+				// resolved once, generic body types like List<Order> included
+				bodyType = method.getGenericParameterTypes()[msgBodyIndex];
+				primitiveBody = parameterTypes[msgBodyIndex].isPrimitive();
+			}
+			replyType = inspectReplyType(method);
+			invoker = bind(service, method, parameterTypes.length);
+		}
+		
+		/**
+		 * Binds the receiver method once to a handle of the fixed type (body, headers) -> result,
+		 * so a call needs neither reflection nor an argument array. Other parameters get null.
+		 *
+		 * The handle is kept in an instance field, so the JIT does not treat it as a constant and
+		 * does not inline the receiver method into {@link #call(Object, Map)}; a call is an indirect
+		 * invocation of the adapted handle, without boxing of arguments or access checks.
+		 */
+		private MethodHandle bind(Object service, Method method, int parameterCount) {
+			try {
+				if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+					method.setAccessible(true);
+				}
+				MethodHandle handle = MethodHandles.lookup().unreflect(method);
+				if (!Modifier.isStatic(method.getModifiers())) {
+					handle = handle.bindTo(service);
+				}
+				// a void method returns null
+				handle = handle.asType(handle.type().generic());
+				int[] reorder = new int[parameterCount];
+				for (int i = 0; i < parameterCount; i++) {
+					reorder[i] = i == msgBodyIndex ? 0 : i == msgHeaderMapIndex ? 1 : 2;
+				}
+				handle = MethodHandles.permuteArguments(handle, CALL_TYPE.appendParameterTypes(Object.class), reorder);
+				return MethodHandles.insertArguments(handle, 2, (Object) null);
+			} catch (IllegalAccessException e) {
+				throw new JMSServiceException("receiver method " + method + " is not accessible", e);
+			}
 		}
 		
-		public Class<?> getBodyType() {
-			if (msgBodyIndex == -1) {
+		/**
+		 * @return the declared type of the replies, the element type of streamed replies, null for void methods
+		 */
+		private Type inspectReplyType(Method method) {
+			Type returnType = method.getGenericReturnType();
+			if (returnType == void.class) {
 				return null;
 			}
-			return  method.getParameterTypes()[msgBodyIndex];
+			if (isReturningStream()) {
+				return returnType instanceof ParameterizedType ? ((ParameterizedType) returnType).getActualTypeArguments()[0] : null;
+			}
+			return returnType;
+		}
+		
+		public Class<?> getServiceType() {
+			return serviceType;
+		}
+		
+		public Method getMethod() {
+			return method;
+		}
+		
+		public Type getBodyType() {
+			return bodyType;
+		}
+		
+		public Type getReplyType() {
+			return replyType;
 		}
 		
 		public boolean isConsumingMessageHeaders() {
@@ -149,24 +584,19 @@ public class JMSMessageListenerServiceAdapter<T> {
 			return method.getReturnType() == void.class;
 		}
 
+		/**
+		 * @return true if the method returns an {@link Iterator} or a {@link BaseStream} whose elements are sent as a {@link JMSReplyStream}
+		 */
+		public boolean isReturningStream() {
+			return Iterator.class.isAssignableFrom(method.getReturnType()) || BaseStream.class.isAssignableFrom(method.getReturnType());
+		}
+
 		public Object call(Object body, Map<String, Object> messageHeaders) throws Throwable {
-			Object[] methodArguments = new Object[method.getParameterTypes().length];
-			
-			if (body != null && msgBodyIndex != -1) {
-				methodArguments[msgBodyIndex] = body;
-			}
-			
-			if (isConsumingMessageHeaders()) {
-				methodArguments[msgHeaderMapIndex] = messageHeaders;
-			}
-			
-			try {
-				Object result = method.invoke(service, methodArguments);
-				return result;
-			} catch (InvocationTargetException e) {
-				throw e.getTargetException();
+			if (body == null && primitiveBody) {
+				// the handle would fail unboxing it with a NullPointerException
+				throw new JMSServiceException("receiver method " + method + " has a primitive body parameter, but the message body is empty");
 			}
-			
+			return (Object) invoker.invokeExact(body, (Object) messageHeaders);
 		}
 		
 		private boolean isMessageHeadersParam(Method method, int i) {
@@ -20,7 +20,32 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Marks the methods of a POJO receiving the messages of a {@link JMSMessageListenerServiceAdapter}.
+ *
+ * A receiver class may have several receiver methods, each message is routed to one of them by
+ * its {@link #OPERATION_PROPERTY}, which service proxies set to the name of the called method or
+ * to the value of its {@link JMSOperation}. A request whose operation matches no receiver method
+ * is answered with an error reply.
+ */
 @Target({ElementType.METHOD})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface JMSMessageReceiver {
+	
+	/**
+	 * Message property carrying the name of the called service method.
+	 */
+	String OPERATION_PROPERTY = "OPERATION";
+	
+	/**
+	 * Message property carrying the time in ms since the epoch after which the caller no longer
+	 * waits for the reply. Listeners drop requests past their deadline.
+	 */
+	String DEADLINE_PROPERTY = "DEADLINE";
+	
+	/**
+	 * @return the operation received by the method, the method name by default
+	 */
+	String operation() default "";
+	
 }
\ No newline at end of file
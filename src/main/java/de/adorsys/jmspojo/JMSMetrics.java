@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.lang.reflect.Method;
+
+/**
+ * SPI recording the latencies and events of the JMS calls of service proxies and listener adapters.
+ *
+ * The recorder of a method is resolved once when the proxy or adapter is created, so an
+ * implementation only has to be fast in recording. {@link JMSHistogramMetrics} is the default
+ * implementation, {@link #NOOP} records nothing.
+ *
+ * @author sso
+ */
+public interface JMSMetrics {
+
+	/**
+	 * The phases of a call, their durations are recorded in nanoseconds.
+	 */
+	enum Phase {
+		/** creating the message and serializing the body */
+		SERIALIZE,
+		/** sending the message to the broker */
+		SEND,
+		/** waiting for the reply after sending */
+		REPLY,
+		/** deserializing a request or reply body */
+		DESERIALIZE,
+		/** invoking the receiver method of a listener */
+		DISPATCH
+	}
+
+	enum Event {
+		/** a service method was called or a listener received a message */
+		CALL,
+		/** no reply was received within the timeout */
+		TIMEOUT,
+		/** an error reply was received or sent */
+		ERROR,
+		/** a call shared the request of an equal call in flight */
+		COALESCED,
+		/** a call was answered by a cached reply */
+		CACHE_HIT,
+		/** a call of a cached method found no cached reply */
+		CACHE_MISS,
+		/** a listener received a message it had already processed */
+		DUPLICATE,
+		/** a call was rejected by a limiter */
+		REJECTED,
+		/** a listener dropped a request whose caller had stopped waiting */
+		EXPIRED
+	}
+
+	JMSMetrics NOOP = new JMSMetrics() {
+
+		@Override
+		public JMSMethodMetrics getMethodMetrics(Class<?> service, Method method) {
+			return JMSMethodMetrics.NOOP;
+		}
+	};
+
+	/**
+	 * @param service the proxied service interface or the class of the listener's service object
+	 * @param method a method of the service interface or the receiver method of a listener, which
+	 * may be declared by a super type of the service
+	 */
+	JMSMethodMetrics getMethodMetrics(Class<?> service, Method method);
+
+	/**
+	 * Records the calls of one method, called concurrently.
+	 */
+	interface JMSMethodMetrics {
+
+		JMSMethodMetrics NOOP = new JMSMethodMetrics() {
+
+			@Override
+			public void record(Phase phase, long nanos) {
+			}
+
+			@Override
+			public void increment(Event event) {
+			}
+		};
+
+		void record(Phase phase, long nanos);
+
+		void increment(Event event);
+
+	}
+
+}
@@ -15,10 +15,49 @@
  */
 package de.adorsys.jmspojo;
 
-public interface JMSObjectMapper {
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link JMSBodyMapper} writing text, messages are sent as {@link javax.jms.TextMessage}.
+ */
+public interface JMSObjectMapper extends JMSBodyMapper {
 	
 	String serialize(Object object);
 	
 	<T> T deserialize(String serialized, Class<T> type);
 
+	/**
+	 * Deserializes to a generic type like <code>List&lt;Order&gt;</code>. Mappers without
+	 * generics support only accept classes.
+	 */
+	@SuppressWarnings("unchecked")
+	default <T> T deserialize(String serialized, Type type) {
+		if (!(type instanceof Class)) {
+			throw new UnsupportedOperationException(getClass().getName() + " does not support generic type " + type);
+		}
+		return deserialize(serialized, (Class<T>) type);
+	}
+
+	/**
+	 * Writes the text as UTF-8, for bodies sent as bytes like compressed or chunked ones. Mappers
+	 * able to encode while they serialize override it to skip the String and its copy.
+	 */
+	default void serializeUtf8(Object object, OutputStream out) throws IOException {
+		String serialized = serialize(object);
+		if (serialized != null) {
+			out.write(serialized.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Reads text encoded as UTF-8. Mappers able to decode while they parse override it to skip
+	 * the String.
+	 */
+	default <T> T deserializeUtf8(byte[] utf8, int offset, int length, Type type) {
+		return deserialize(new String(utf8, offset, length, StandardCharsets.UTF_8), type);
+	}
+
 }
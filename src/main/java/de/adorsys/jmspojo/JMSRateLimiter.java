@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of calls with a token bucket: up to <code>burst</code> calls may be made at
+ * once, then <code>permitsPerSecond</code>. A call waits for its token if it is available within
+ * <code>maxWaitMs</code>, otherwise it fails at once.
+ *
+ * @author sso
+ */
+public class JMSRateLimiter implements JMSLimiter {
+
+	private final double permitsPerSecond;
+	private final double nanosPerPermit;
+	private final int burst;
+	private final long maxWaitNanos;
+	private double tokens;
+	private long refilled = System.nanoTime();
+
+	public JMSRateLimiter(double permitsPerSecond, int burst, long maxWaitMs) {
+		super();
+		if (permitsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("permitsPerSecond must be positive and burst at least 1");
+		}
+		this.permitsPerSecond = permitsPerSecond;
+		this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+		this.burst = burst;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+		this.tokens = burst;
+	}
+
+	@Override
+	public void acquire() {
+		long waitNanos;
+		synchronized (this) {
+			long now = System.nanoTime();
+			tokens = Math.min(burst, tokens + (now - refilled) / nanosPerPermit);
+			refilled = now;
+			waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) * nanosPerPermit);
+			if (waitNanos > maxWaitNanos) {
+				throw new JMSServiceException("rate of " + permitsPerSecond + " calls per second is exceeded");
+			}
+			// the token is reserved, callers waiting for later tokens go into debt
+			tokens -= 1;
+		}
+		if (waitNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JMSServiceException(e);
+			}
+		}
+	}
+
+	@Override
+	public void release(long roundTripNanos) {
+	}
+
+	@Override
+	public void release() {
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.adorsys.jmspojo.JMSMetrics.Event;
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+
+/**
+ * Least recently used cache of the replies of a {@link JMSCached} method. Only successful
+ * replies are cached, expired ones are dropped when they are looked up or evicted. All hits share
+ * the cached reply object. Replies of requests sent before the last {@link #clear()} are not
+ * cached.
+ */
+class JMSReplyCache<T> {
+
+	private final long ttlNanos;
+	private final JMSMethodMetrics metrics;
+	private final Map<JMSRequestKey, CachedReply<T>> replies;
+	private long generation;
+
+	JMSReplyCache(long ttlMs, final int maxEntries, JMSMethodMetrics metrics) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be at least 1");
+		}
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+		this.metrics = metrics;
+		this.replies = new LinkedHashMap<JMSRequestKey, CachedReply<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<JMSRequestKey, CachedReply<T>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @return a completed future of the cached reply, null if none is cached
+	 */
+	synchronized JMSFuture<T> get(JMSRequestKey key) {
+		CachedReply<T> cached = replies.get(key);
+		if (cached != null && System.nanoTime() - cached.created > ttlNanos) {
+			replies.remove(key);
+			cached = null;
+		}
+		if (cached == null) {
+			metrics.increment(Event.CACHE_MISS);
+			return null;
+		}
+		metrics.increment(Event.CACHE_HIT);
+		return new JMSCompletedFuture<>(cached.reply);
+	}
+
+	/**
+	 * @return the generation to pass to {@link #cache(JMSRequestKey, JMSFuture, long)}, taken before the request is sent
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Caches the reply of <code>future</code> once it was received, unless the cache was cleared
+	 * since <code>generation</code>.
+	 */
+	void cache(final JMSRequestKey key, JMSFuture<T> future, final long generation) {
+		CompletableFuture<T> reply = future.toCompletableFuture();
+		reply.thenAccept(value -> put(key, value, generation));
+	}
+
+	synchronized void put(JMSRequestKey key, T reply, long generation) {
+		if (generation == this.generation) {
+			replies.put(key, new CachedReply<>(reply));
+		}
+	}
+
+	synchronized void clear() {
+		generation++;
+		replies.clear();
+	}
+
+	synchronized int size() {
+		return replies.size();
+	}
+
+	private static class CachedReply<T> {
+		private final T reply;
+		private final long created = System.nanoTime();
+
+		CachedReply(T reply) {
+			this.reply = reply;
+		}
+	}
+
+}
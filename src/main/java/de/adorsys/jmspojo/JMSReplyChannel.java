@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+
+/**
+ * One long living reply destination with a single consumer shared by all
+ * request/reply calls of a {@link JMSServiceAdapterFactory}.
+ *
+ * Requests are stamped with a unique JMSCorrelationID, the consumer routes each
+ * reply to the waiting {@link JMSFuture} by that id. Without an explicit reply
+ * destination a temporary queue is created once per channel. A named reply
+ * queue must not be shared between nodes, every node needs its own.
+ *
+ * @author sso
+ */
+public class JMSReplyChannel implements MessageListener, ExceptionListener, AutoCloseable {
+
+	private final ConnectionFactory connectionFactory;
+	private final Destination configuredReplyDestination;
+	private final ConcurrentMap<String, JMSReplyFuture<?>> inFlight = new ConcurrentHashMap<>();
+	private final String channelId = UUID.randomUUID().toString();
+	private final AtomicLong sequence = new AtomicLong();
+	private Connection connection;
+	private Destination replyDestination;
+	private boolean closed;
+
+	public JMSReplyChannel(ConnectionFactory connectionFactory) {
+		this(connectionFactory, null);
+	}
+
+	public JMSReplyChannel(ConnectionFactory connectionFactory, Destination replyDestination) {
+		super();
+		this.connectionFactory = connectionFactory;
+		this.configuredReplyDestination = replyDestination;
+	}
+
+	<T> JMSReplyFuture<T> register(JMSJavaFutureAdapter<T> adapter, long timeout) {
+		getReplyDestination();
+		final String correlationId = channelId + "-" + sequence.incrementAndGet();
+		final JMSReplyFuture<T> future = new JMSReplyFuture<>(correlationId, adapter, timeout, () -> deregister(correlationId), false);
+		inFlight.put(correlationId, future);
+		future.scheduleExpiry();
+		return future;
+	}
+
+	void deregister(String correlationId) {
+		inFlight.remove(correlationId);
+	}
+
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	public synchronized Destination getReplyDestination() {
+		if (closed) {
+			throw new JMSServiceException("reply channel is closed");
+		}
+		if (connection == null) {
+			start();
+		}
+		return replyDestination;
+	}
+
+	private void start() {
+		Connection c = null;
+		try {
+			c = connectionFactory.createConnection();
+			c.setExceptionListener(this);
+			Session session = c.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			Destination destination = configuredReplyDestination != null ? configuredReplyDestination : session.createTemporaryQueue();
+			session.createConsumer(destination).setMessageListener(this);
+			c.start();
+			connection = c;
+			replyDestination = destination;
+		} catch (JMSException e) {
+			JMSResourceHousekeeper.close(c);
+			throw new JMSServiceException(e);
+		}
+	}
+
+	@Override
+	public void onMessage(Message message) {
+		try {
+			String correlationId = message.getJMSCorrelationID();
+			// the future deregisters once it is complete, chunked replies arrive in several messages
+			JMSReplyFuture<?> future = correlationId != null ? inFlight.get(correlationId) : null;
+			if (future != null) {
+				future.complete(message);
+			}
+			// replies without a waiting future are late replies of timed out or closed calls
+		} catch (JMSException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A broken connection fails all pending calls, the next request reconnects.
+	 */
+	@Override
+	public void onException(JMSException exception) {
+		synchronized (this) {
+			JMSResourceHousekeeper.close(connection);
+			connection = null;
+			replyDestination = null;
+		}
+		failPending(exception);
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			JMSResourceHousekeeper.close(connection);
+			connection = null;
+		}
+		failPending(new JMSServiceException("reply channel is closed"));
+	}
+
+	private void failPending(Throwable cause) {
+		for (String correlationId : new ArrayList<>(inFlight.keySet())) {
+			JMSReplyFuture<?> future = inFlight.remove(correlationId);
+			if (future != null) {
+				future.fail(cause);
+			}
+		}
+	}
+
+}
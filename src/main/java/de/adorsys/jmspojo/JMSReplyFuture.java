@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.text.MessageFormat;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Future of a request whose reply message is pushed to it by a JMS message listener,
+ * either the consumer of a temporary reply queue or a shared {@link JMSReplyChannel}.
+ *
+ * Waiting threads block only on the completion, not on a JMS consumer. The reply
+ * body is deserialized lazily by the first caller of {@link #get()} or, if a
+ * completion stage was requested, by the thread delivering the reply. The JMS
+ * resources of the call are released as soon as the future completes, is
+ * cancelled, closed or expires.
+ */
+class JMSReplyFuture<T> extends JMSFuture<T> {
+
+	private final String correlationId;
+	private final JMSJavaFutureAdapter<T> adapter;
+	private final long timeout;
+	private final AutoCloseable resources;
+	private final boolean deferRelease;
+	private final CompletableFuture<Message> replied = new CompletableFuture<>();
+	private final AtomicBoolean released = new AtomicBoolean();
+	private final AtomicBoolean timedOut = new AtomicBoolean();
+	private final long created = System.nanoTime();
+	private volatile long sent;
+	private volatile JMSResourceHousekeeper.JMSScheduledTask expiry;
+	private volatile JMSChunking.Assembly assembly;
+	private CompletableFuture<T> completionStage;
+	private volatile boolean read;
+	private T object;
+
+	/**
+	 * @param deferRelease if true resources are not released by the thread delivering the reply,
+	 * but by a housekeeping thread which completes the future afterwards
+	 */
+	JMSReplyFuture(String correlationId, JMSJavaFutureAdapter<T> adapter, long timeout, AutoCloseable resources, boolean deferRelease) {
+		super();
+		this.correlationId = correlationId;
+		this.adapter = adapter;
+		this.timeout = timeout;
+		this.resources = resources;
+		this.deferRelease = deferRelease;
+	}
+
+	String getCorrelationId() {
+		return correlationId;
+	}
+
+	/**
+	 * @param nanos the time the request was sent, the reply may already have arrived
+	 */
+	void sent(long nanos) {
+		sent = nanos;
+	}
+
+	/**
+	 * Resources are released before the future completes, so a completed call holds no
+	 * JMS resources anymore. A chunked reply completes the future with its last chunk.
+	 *
+	 * @return false if the message is a chunk and further chunks are awaited
+	 */
+	boolean complete(final Message message) {
+		try {
+			if (JMSChunking.isChunk(message)) {
+				assembly = adapter.assemble(message);
+				if (assembly == null) {
+					return false;
+				}
+			}
+		} catch (JMSException | RuntimeException e) {
+			fail(e);
+			return true;
+		}
+		// a reply on a shared channel may arrive before its sending is reported
+		long sentAt = sent != 0 ? sent : created;
+		adapter.getMetrics().record(JMSMetrics.Phase.REPLY, System.nanoTime() - sentAt);
+		if (deferRelease) {
+			// releasing blocks on the broker, so it does not run on the common pool of the JVM
+			JMSResourceHousekeeper.execute(() -> {
+				release();
+				replied.complete(message);
+			});
+		} else {
+			release();
+			replied.complete(message);
+		}
+		return true;
+	}
+
+	void fail(Throwable cause) {
+		release();
+		replied.completeExceptionally(cause);
+	}
+
+	/**
+	 * Schedules the expiry of the call, it is cancelled as soon as the future is released. A
+	 * future still waiting when the housekeeper stops fails, as nothing would expire it anymore.
+	 */
+	void scheduleExpiry() {
+		expiry = JMSResourceHousekeeper.schedule(timeout, this::expire,
+				() -> fail(new JMSServiceException("housekeeping stopped while waiting for the reply of " + correlationId)));
+		if (released.get()) {
+			// the reply may have arrived in the meantime
+			expiry.cancel();
+		}
+	}
+
+	/**
+	 * Called by the housekeeper once the call timeout has passed.
+	 */
+	void expire() {
+		if (!replied.isDone()) {
+			recordTimeout();
+			String reason = MessageFormat.format("timeout of reply mesage {0} timeout {1} ms", correlationId, timeout);
+			fail(new TimeoutException(reason));
+		}
+	}
+
+	private void recordTimeout() {
+		// the waiting caller and the housekeeper may both see the timeout
+		if (timedOut.compareAndSet(false, true)) {
+			adapter.getMetrics().increment(JMSMetrics.Event.TIMEOUT);
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = replied.cancel(mayInterruptIfRunning);
+		release();
+		return cancelled;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return replied.isCancelled();
+	}
+
+	@Override
+	public boolean isDone() {
+		return replied.isDone();
+	}
+
+	@Override
+	public T get() throws ExecutionException {
+		try {
+			return get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new ExecutionException(e);
+		}
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws ExecutionException, TimeoutException {
+		if (read) {
+			return object;
+		}
+		Message message;
+		try {
+			message = replied.get(timeout, unit);
+		} catch (TimeoutException e) {
+			// the call ends here, the future is closed
+			recordTimeout();
+			String reason = MessageFormat.format("timeout of reply mesage {0} timeout {1} {2}", correlationId, timeout, unit);
+			throw new TimeoutException(reason);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException) {
+				throw (TimeoutException) e.getCause();
+			}
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JMSServiceException(e);
+		} finally {
+			// like the consumer based futures, a future is closed by waiting for it
+			close();
+		}
+		return read(message);
+	}
+
+	private synchronized T read(Message message) throws ExecutionException {
+		if (!read) {
+			JMSChunking.Assembly chunks = assembly;
+			object = chunks != null ? adapter.readReply(chunks) : adapter.readReply(message);
+			read = true;
+		}
+		return object;
+	}
+
+	@Override
+	boolean onDone(Runnable callback) {
+		replied.whenComplete((message, failure) -> callback.run());
+		return true;
+	}
+
+	@Override
+	public synchronized CompletableFuture<T> toCompletableFuture() {
+		if (completionStage == null) {
+			final CompletableFuture<T> stage = new CompletableFuture<>();
+			replied.whenComplete((message, failure) -> {
+				if (failure != null) {
+					stage.completeExceptionally(failure);
+					return;
+				}
+				try {
+					stage.complete(read(message));
+				} catch (ExecutionException e) {
+					stage.completeExceptionally(e.getCause() != null ? e.getCause() : new JMSServiceException(e.getMessage()));
+				} catch (RuntimeException e) {
+					stage.completeExceptionally(e);
+				}
+			});
+			stage.whenComplete((value, failure) -> {
+				if (failure instanceof CancellationException) {
+					cancel(false);
+				}
+			});
+			completionStage = stage;
+		}
+		return completionStage;
+	}
+
+	/**
+	 * Closing a future which is not done yet cancels the call.
+	 */
+	@Override
+	public void close() {
+		if (!replied.isDone()) {
+			replied.cancel(false);
+		}
+		release();
+	}
+
+	private void release() {
+		if (released.compareAndSet(false, true)) {
+			JMSResourceHousekeeper.JMSScheduledTask scheduledExpiry = expiry;
+			if (scheduledExpiry != null) {
+				scheduledExpiry.cancel();
+			}
+			JMSResourceHousekeeper.close(resources);
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+
+/**
+ * The replies of a request answered by a receiver returning an {@link Iterator} or a {@link Stream}.
+ *
+ * Every element arrives as its own reply message, the last message carries the
+ * {@link #END_OF_STREAM_PROPERTY}. Replies are received one by one while the caller iterates and
+ * the client buffers at most the prefetch of its connection factory. The listener serializes an
+ * element only when it sends it, but sends as fast as its receiver produces the elements; it is
+ * not slowed down by the caller, the elements not fetched yet wait on the broker. Each element is
+ * awaited for the call timeout. The JMS resources of the call are released when the stream
+ * ends, fails or is closed.
+ */
+public class JMSReplyStream<T> implements Iterator<T>, AutoCloseable {
+
+	/**
+	 * Message property marking the last message of a reply stream.
+	 */
+	public static final String END_OF_STREAM_PROPERTY = "END_OF_STREAM";
+
+	private final String correlationId;
+	private final JMSJavaFutureAdapter<T> adapter;
+	private final MessageConsumer consumer;
+	private final AutoCloseable resources;
+	private final long timeout;
+	private boolean fetched;
+	private boolean ended;
+	private T next;
+
+	JMSReplyStream(String correlationId, JMSJavaFutureAdapter<T> adapter, MessageConsumer consumer, AutoCloseable resources, long timeout) {
+		super();
+		this.correlationId = correlationId;
+		this.adapter = adapter;
+		this.consumer = consumer;
+		this.resources = resources;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public synchronized boolean hasNext() {
+		if (fetched) {
+			return true;
+		}
+		if (ended) {
+			return false;
+		}
+		try {
+			while (true) {
+				Message message = consumer.receive(timeout);
+				if (message == null) {
+					throw new JMSServiceException(MessageFormat.format("timeout of reply stream {0} timeout {1} ms", correlationId, timeout));
+				}
+				String error = message.getStringProperty("ERROR");
+				if (message.propertyExists(END_OF_STREAM_PROPERTY) && error == null) {
+					close();
+					return false;
+				}
+				if (JMSChunking.isChunk(message)) {
+					JMSChunking.Assembly assembly = adapter.assemble(message);
+					if (assembly == null) {
+						continue;
+					}
+					next = adapter.readReply(assembly);
+				} else {
+					// errors are reported by the reply read
+					next = adapter.readReply(message);
+				}
+				fetched = true;
+				return true;
+			}
+		} catch (JMSException | ExecutionException e) {
+			close();
+			throw new JMSServiceException(e.getMessage(), e);
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T element = next;
+		next = null;
+		fetched = false;
+		return element;
+	}
+
+	/**
+	 * @return a sequential stream of the remaining replies, closing it closes this reply stream
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Closing a stream before its end drops the remaining replies.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!ended) {
+			ended = true;
+			JMSResourceHousekeeper.close(resources);
+		}
+	}
+
+}
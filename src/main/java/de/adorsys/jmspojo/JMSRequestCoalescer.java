@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jms.Destination;
+
+import de.adorsys.jmspojo.JMSMetrics.Event;
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+
+/**
+ * Shares one request among equal calls of a {@link JMSCoalesced} method in flight at the same
+ * time. Calls are equal if their destination, headers and serialized body are.
+ *
+ * Every caller gets a future of its own, closing or cancelling it only cancels the request once
+ * all callers did. The request leaves the coalescer as soon as its reply arrived, later calls
+ * send a new one.
+ */
+class JMSRequestCoalescer<T> {
+
+	private final JMSJavaFutureAdapter<T> adapter;
+	private final JMSBodyMapper objectMapper;
+	private final long timeout;
+	private final JMSMethodMetrics metrics;
+	private final ConcurrentMap<JMSRequestKey, InFlightRequest<T>> inFlight = new ConcurrentHashMap<>();
+
+	JMSRequestCoalescer(JMSJavaFutureAdapter<T> adapter, JMSBodyMapper objectMapper, long timeout, JMSMethodMetrics metrics) {
+		this.adapter = adapter;
+		this.objectMapper = objectMapper;
+		this.timeout = timeout;
+		this.metrics = metrics;
+	}
+
+	JMSFuture<T> send(Destination destination, Map<String, Object> messageProperties, Object data) {
+		return send(JMSRequestKey.of(objectMapper, destination, messageProperties, data), destination, messageProperties, data);
+	}
+
+	/**
+	 * @param key the key of the call, if it is already known
+	 */
+	JMSFuture<T> send(JMSRequestKey key, Destination destination, Map<String, Object> messageProperties, Object data) {
+		while (true) {
+			InFlightRequest<T> request = inFlight.get(key);
+			if (request == null) {
+				InFlightRequest<T> created = new InFlightRequest<>();
+				request = inFlight.putIfAbsent(key, created);
+				if (request == null) {
+					return start(key, created, destination, messageProperties, data);
+				}
+			}
+			JMSFuture<T> joined = request.join(timeout);
+			if (joined != null) {
+				metrics.increment(Event.COALESCED);
+				return joined;
+			}
+			// completed in the meantime
+			inFlight.remove(key, request);
+		}
+	}
+
+	int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private JMSFuture<T> start(final JMSRequestKey key, final InFlightRequest<T> request, Destination destination, Map<String, Object> messageProperties, Object data) {
+		request.reply.whenComplete((reply, failure) -> inFlight.remove(key, request));
+		JMSFuture<T> caller = request.join(timeout);
+		JMSFuture<T> future;
+		try {
+			future = adapter.send(destination, messageProperties, data);
+		} catch (RuntimeException e) {
+			request.reply.completeExceptionally(e);
+			throw e;
+		}
+		request.request = future;
+		future.toCompletableFuture().whenComplete((reply, failure) -> {
+			if (failure != null) {
+				request.reply.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+			} else {
+				request.reply.complete(reply);
+			}
+		});
+		if (request.reply.isCancelled()) {
+			// all callers left before the request was sent
+			future.close();
+		}
+		return caller;
+	}
+
+	private static class InFlightRequest<T> {
+		private final CompletableFuture<T> reply = new CompletableFuture<>();
+		private volatile JMSFuture<T> request;
+		private int callers;
+
+		/**
+		 * @return the future of a new caller, null if the request is done
+		 */
+		synchronized JMSFuture<T> join(long timeout) {
+			if (reply.isDone()) {
+				return null;
+			}
+			callers++;
+			return new CoalescedFuture<>(this, timeout);
+		}
+
+		synchronized void leave() {
+			if (--callers > 0 || reply.isDone()) {
+				return;
+			}
+			reply.cancel(false);
+			JMSFuture<T> sent = request;
+			if (sent != null) {
+				sent.close();
+			}
+		}
+	}
+
+	/**
+	 * The future of one caller sharing a request.
+	 */
+	private static class CoalescedFuture<T> extends JMSFuture<T> {
+
+		private final InFlightRequest<T> request;
+		private final long timeout;
+		private final CompletableFuture<T> reply = new CompletableFuture<>();
+		private final AtomicBoolean left = new AtomicBoolean();
+
+		CoalescedFuture(InFlightRequest<T> request, long timeout) {
+			this.request = request;
+			this.timeout = timeout;
+			request.reply.whenComplete((value, failure) -> {
+				if (failure != null) {
+					reply.completeExceptionally(failure);
+				} else {
+					reply.complete(value);
+				}
+			});
+			reply.whenComplete((value, failure) -> {
+				if (reply.isCancelled()) {
+					leave();
+				}
+			});
+		}
+
+		private void leave() {
+			if (left.compareAndSet(false, true)) {
+				request.leave();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return reply.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return reply.isCancelled();
+		}
+
+		@Override
+		public boolean isDone() {
+			return reply.isDone();
+		}
+
+		@Override
+		public T get() throws ExecutionException {
+			try {
+				return get(timeout, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				throw new ExecutionException(e);
+			}
+		}
+
+		@Override
+		public T get(long timeout, TimeUnit unit) throws ExecutionException, TimeoutException {
+			try {
+				return reply.get(timeout, unit);
+			} catch (TimeoutException e) {
+				throw new TimeoutException(MessageFormat.format("timeout of coalesced reply timeout {0} {1}", timeout, unit));
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof TimeoutException) {
+					throw (TimeoutException) e.getCause();
+				}
+				throw e;
+			} catch (CancellationException e) {
+				throw new ExecutionException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JMSServiceException(e);
+			} finally {
+				// like the other futures, a future is closed by waiting for it
+				close();
+			}
+		}
+
+		@Override
+		boolean onDone(Runnable callback) {
+			reply.whenComplete((value, failure) -> callback.run());
+			return true;
+		}
+
+		@Override
+		public CompletableFuture<T> toCompletableFuture() {
+			return reply;
+		}
+
+		/**
+		 * Closing a future which is not done yet cancels the call of this caller only.
+		 */
+		@Override
+		public void close() {
+			if (!reply.isDone()) {
+				reply.cancel(false);
+			}
+		}
+	}
+
+}
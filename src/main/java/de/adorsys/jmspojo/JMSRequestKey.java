@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.jms.Destination;
+
+/**
+ * Identifies a call of one service method by its destination, headers and serialized body,
+ * binary bodies are compared by content.
+ */
+final class JMSRequestKey {
+
+	private final Destination destination;
+	private final Map<String, Object> messageProperties;
+	private final Object body;
+	private final int hash;
+
+	private JMSRequestKey(Destination destination, Map<String, Object> messageProperties, Object body) {
+		this.destination = destination;
+		this.messageProperties = messageProperties;
+		this.body = body;
+		this.hash = Objects.hash(destination, messageProperties, body);
+	}
+
+	static JMSRequestKey of(JMSBodyMapper objectMapper, Destination destination, Map<String, Object> messageProperties, Object data) {
+		Map<String, Object> properties = messageProperties != null ? new HashMap<>(messageProperties) : null;
+		return new JMSRequestKey(destination, properties, serialize(objectMapper, data));
+	}
+
+	private static Object serialize(JMSBodyMapper objectMapper, Object data) {
+		Object body = JMSMessageBody.serialize(objectMapper, data);
+		return body instanceof byte[] ? ByteBuffer.wrap((byte[]) body) : body;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof JMSRequestKey)) {
+			return false;
+		}
+		JMSRequestKey other = (JMSRequestKey) obj;
+		return hash == other.hash && Objects.equals(destination, other.destination)
+				&& Objects.equals(messageProperties, other.messageProperties) && Objects.equals(body, other.body);
+	}
+
+}
@@ -15,9 +15,11 @@
  */
 package de.adorsys.jmspojo;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jms.Connection;
 import javax.jms.JMSException;
@@ -25,16 +27,89 @@ import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.Session;
 
+/**
+ * Closes JMS resources quietly and runs the timeouts of the JMS calls.
+ *
+ * Timeouts are kept in a hashed wheel timer with a resolution of {@value #TICK_MS} ms, which is
+ * started with the first scheduled task and runs until {@link #stop()}. The timer thread only hands
+ * expired tasks over to a small pool of daemon threads, so tasks which close consumers, delete
+ * temporary queues or commit sessions may block on the broker without delaying other timeouts.
+ */
 public class JMSResourceHousekeeper {
 	
-	private static final ScheduledExecutorService CLEANUP_SCHEDULER = Executors.newScheduledThreadPool(1);
+	private static final long TICK_MS = 10;
+	private static final int WHEEL_SIZE = 512;
 	
+	private static final long TASK_KEEP_ALIVE_SECONDS = 60;
+	
+	private static volatile Housekeeping housekeeping;
+	
+	/**
+	 * A scheduled task, cancelled tasks are released right away.
+	 */
+	public interface JMSScheduledTask {
+		
+		/**
+		 * @return false if the task has already run or was cancelled before
+		 */
+		boolean cancel();
+		
+		boolean isCancelled();
+		
+	}
+	
+	/**
+	 * @deprecated the housekeeping threads are shared by all instances, use {@link #stop()}
+	 */
+	@Deprecated
 	public void shutdown() {
-		CLEANUP_SCHEDULER.shutdown();
+		stop();
+	}
+	
+	/**
+	 * Stops the housekeeping threads, to be called when the application stops. Scheduled tasks
+	 * do not run anymore, their stop action runs instead. Tasks already handed over finish. Tasks
+	 * scheduled afterwards start new threads.
+	 */
+	public static synchronized void stop() {
+		if (housekeeping != null) {
+			housekeeping.timer.stop();
+			housekeeping.executor.shutdown();
+			housekeeping = null;
+		}
+	}
+	
+	/**
+	 * Runs the task after the delay on a housekeeping thread, the task may block.
+	 */
+	public static JMSScheduledTask schedule(long delayMs, Runnable task) {
+		return schedule(delayMs, task, null);
+	}
+	
+	/**
+	 * @param stopped runs instead of the task on the stopping timer thread if the housekeeper is
+	 * stopped before the task ran, may be null
+	 */
+	public static JMSScheduledTask schedule(long delayMs, Runnable task, Runnable stopped) {
+		return getHousekeeping().schedule(delayMs, task, stopped);
+	}
+	
+	/**
+	 * Runs the task at once on a housekeeping thread, the task may block.
+	 */
+	public static void execute(Runnable task) {
+		while (true) {
+			try {
+				getHousekeeping().execute(task);
+				return;
+			} catch (RejectedExecutionException e) {
+				// stopped meanwhile, the next attempt starts new threads
+			}
+		}
 	}
 	
-	public static void close(long timeoutMs, final AutoCloseable... closeable) {
-		CLEANUP_SCHEDULER.schedule(new Runnable() {
+	public static JMSScheduledTask close(long timeoutMs, final AutoCloseable... closeable) {
+		return schedule(timeoutMs, new Runnable() {
 			
 			@Override
 			public void run() {
@@ -42,7 +117,77 @@ public class JMSResourceHousekeeper {
 					close(autoCloseable);
 				}
 			}
-		}, timeoutMs, TimeUnit.MILLISECONDS);
+		});
+	}
+	
+	/**
+	 * @return the number of scheduled tasks which have neither run nor been cancelled
+	 */
+	public static int getPendingCount() {
+		Housekeeping current = housekeeping;
+		return current != null ? current.timer.getPendingCount() : 0;
+	}
+	
+	private static Housekeeping getHousekeeping() {
+		Housekeeping current = housekeeping;
+		if (current == null) {
+			synchronized (JMSResourceHousekeeper.class) {
+				if (housekeeping == null) {
+					housekeeping = new Housekeeping();
+				}
+				current = housekeeping;
+			}
+		}
+		return current;
+	}
+	
+	/**
+	 * The timer thread and the threads which run the expired tasks, started and stopped together.
+	 */
+	private static final class Housekeeping {
+		
+		private final JMSHashedWheelTimer timer = new JMSHashedWheelTimer("jmspojo-housekeeper", TICK_MS, WHEEL_SIZE);
+		private final ThreadPoolExecutor executor;
+		
+		Housekeeping() {
+			final AtomicInteger count = new AtomicInteger();
+			int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			executor = new ThreadPoolExecutor(threads, threads, TASK_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), runnable -> {
+						Thread thread = new Thread(runnable, "jmspojo-housekeeper-task-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		
+		JMSScheduledTask schedule(long delayMs, final Runnable task, final Runnable stopped) {
+			return timer.schedule(delayMs, new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						execute(task);
+					} catch (RejectedExecutionException e) {
+						// stopped while the task expired, it is stopped like the other scheduled tasks
+						if (stopped != null) {
+							stopped.run();
+						}
+					}
+				}
+			}, stopped);
+		}
+		
+		void execute(final Runnable task) {
+			executor.execute(() -> {
+				try {
+					task.run();
+				} catch (Throwable e) {
+					e.printStackTrace();
+				}
+			});
+		}
+		
 	}
 	
 	public static void closeAll(Connection jmsConnection, Session jmsSession, MessageProducer sender) {
@@ -55,9 +200,16 @@ public class JMSResourceHousekeeper {
 		try {
 			if (jmsConnection != null) {
 				jmsConnection.stop();
-				jmsConnection.close();
 			}
 		} catch (JMSException e) {
+		} finally {
+			try {
+				if (jmsConnection != null) {
+					// a failed connection refuses to stop, but must still be closed
+					jmsConnection.close();
+				}
+			} catch (JMSException e) {
+			}
 		}
 	}
 
@@ -17,6 +17,7 @@ package de.adorsys.jmspojo;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
@@ -25,49 +26,233 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 
-public class JMSServiceAdapterFactory {
+import de.adorsys.jmspojo.JMSMetrics.Event;
+import de.adorsys.jmspojo.JMSMetrics.JMSMethodMetrics;
+
+public class JMSServiceAdapterFactory implements AutoCloseable {
 	
-	private final JMSObjectMapper objectMapper;
-	private final ConnectionFactory connectionFactory;
+	private final JMSBodyMapper objectMapper;
+	private final JMSConnectionPool connectionPool;
 	private final long defaultTimeout;
 	private final Destination defaultDestination;
+	private final List<JMSBatchSender> batchSenders = new CopyOnWriteArrayList<>();
+	private final List<JMSReplyCache<?>> replyCaches = new CopyOnWriteArrayList<>();
+	private JMSReplyChannel replyChannel;
+	private int defaultBatchSize;
+	private long defaultLingerMs;
+	private JMSAsyncSender.Callback batchCallback;
+	private JMSMetrics metrics = JMSMetrics.NOOP;
+	private JMSCompression compression;
+	private JMSChunking chunking;
+	private JMSAsyncSender asyncSender;
+	private JMSLimiter limiter;
+	private final Map<String, JMSLimiter> methodLimiters = new HashMap<>();
 	
 	public JMSServiceAdapterFactory(JMSObjectMapper objectMapper, ConnectionFactory connectionFactory, Destination defaultDestination, long defaultTimeout) {
+		this((JMSBodyMapper) objectMapper, connectionFactory, defaultDestination, defaultTimeout);
+	}
+	
+	/**
+	 * Creates a factory whose proxies send with a text or binary mapper.
+	 */
+	public JMSServiceAdapterFactory(JMSBodyMapper objectMapper, ConnectionFactory connectionFactory, Destination defaultDestination, long defaultTimeout) {
+		this(objectMapper, JMSConnectionPool.unpooled(connectionFactory), defaultDestination, defaultTimeout);
+	}
+	
+	/**
+	 * Creates a factory whose proxies send through the given pool, so connections, sessions and
+	 * producers are reused across calls. The pool is owned by the caller and must be closed by it.
+	 */
+	public JMSServiceAdapterFactory(JMSBodyMapper objectMapper, JMSConnectionPool connectionPool, Destination defaultDestination, long defaultTimeout) {
 		super();
 		this.objectMapper = objectMapper;
-		this.connectionFactory = connectionFactory;
+		this.connectionPool = connectionPool;
 		this.defaultDestination = defaultDestination;
 		this.defaultTimeout = defaultTimeout;
 	}
 
+	/**
+	 * Routes the replies of all proxies generated afterwards through one shared reply
+	 * destination instead of a temporary queue per request. The channel is owned by the caller.
+	 */
+	public void setReplyChannel(JMSReplyChannel replyChannel) {
+		this.replyChannel = replyChannel;
+	}
+
+	/**
+	 * Batches the calls of all void methods of proxies generated afterwards, as if they were
+	 * annotated with {@link JMSBatched}. Annotated methods and interfaces keep their own settings.
+	 */
+	public void setBatching(int maxBatchSize, long lingerMs) {
+		this.defaultBatchSize = maxBatchSize;
+		this.defaultLingerMs = lingerMs;
+	}
+
+	/**
+	 * Reports the outcome of every batched call of proxies generated afterwards, committed or rolled back.
+	 * Without callback failed batches are printed.
+	 */
+	public void setBatchCallback(JMSAsyncSender.Callback batchCallback) {
+		this.batchCallback = batchCallback;
+	}
+
+	/**
+	 * Records the latencies and events of the calls of all proxies generated afterwards.
+	 */
+	public void setMetrics(JMSMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Compresses the message bodies of all proxies generated afterwards which reach the threshold
+	 * of <code>compression</code>. Replies are decompressed whether this is set or not.
+	 */
+	public void setCompression(JMSCompression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Sends the message bodies of all proxies generated afterwards which exceed the chunk size of
+	 * <code>chunking</code> in chunks, except those of batched calls. Chunked replies are reassembled
+	 * whether this is set or not.
+	 */
+	public void setChunking(JMSChunking chunking) {
+		this.chunking = chunking;
+	}
+
+	/**
+	 * Hands the calls of all void methods of proxies generated afterwards to the queue of
+	 * <code>asyncSender</code> instead of sending them in the calling thread. Batched methods keep
+	 * batching. The sender is owned by the caller and must be closed by it.
+	 */
+	public void setAsyncSender(JMSAsyncSender asyncSender) {
+		this.asyncSender = asyncSender;
+	}
+
+	/**
+	 * Sends all calls buffered by batched methods.
+	 */
+	public void flush() {
+		for (JMSBatchSender batchSender : batchSenders) {
+			batchSender.flush();
+		}
+	}
+
+	/**
+	 * Limits the calls of all methods of proxies generated afterwards, except batched and
+	 * asynchronously sent ones. Calls exceeding the limit fail with a {@link JMSServiceException}.
+	 * Sharing one limiter among all proxies of a destination limits the calls to the destination.
+	 */
+	public void setLimiter(JMSLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	/**
+	 * Limits the calls of the methods named <code>methodName</code> of proxies generated afterwards
+	 * by a limiter of their own.
+	 */
+	public void setLimiter(String methodName, JMSLimiter limiter) {
+		methodLimiters.put(methodName, limiter);
+	}
+
+	/**
+	 * Drops the cached replies of all {@link JMSCached} methods, for instance after the cached data changed.
+	 */
+	public void clearReplyCaches() {
+		for (JMSReplyCache<?> replyCache : replyCaches) {
+			replyCache.clear();
+		}
+	}
+
+	/**
+	 * Flushes the buffered calls of batched methods and closes their sessions.
+	 */
+	@Override
+	public void close() {
+		for (JMSBatchSender batchSender : batchSenders) {
+			batchSender.close();
+		}
+		batchSenders.clear();
+	}
+
+	/**
+	 * Returns the implementation generated by the {@link JMSServiceProcessor} for interfaces annotated
+	 * with {@link JMSService}, if it is on the class path, otherwise a dynamic proxy.
+	 */
 	@SuppressWarnings("unchecked")
 	public <T> T generateJMSServiceProxy(Class<T> serviceInterfaceType) {
 		if (!serviceInterfaceType.isInterface()) {
 			throw new JMSServiceException("class " + serviceInterfaceType.getName() + " is no interface");
 		}
+		T generated = createGeneratedProxy(serviceInterfaceType);
+		if (generated != null) {
+			return generated;
+		}
 		ArrayList<Class<?>> interfaces = new ArrayList<Class<?>>();
 		interfaces.add(serviceInterfaceType);
 		interfaces.addAll(Arrays.asList(serviceInterfaceType.getInterfaces()));
 		
-		return (T) Proxy.newProxyInstance(serviceInterfaceType.getClassLoader(), interfaces.toArray(new Class[interfaces.size()]), new JMSInvocationHandler(interfaces));
+		return (T) Proxy.newProxyInstance(serviceInterfaceType.getClassLoader(), interfaces.toArray(new Class[interfaces.size()]), new JMSInvocationHandler(serviceInterfaceType, interfaces));
+	}
+
+	/**
+	 * Binds a service method to this factory, used by the generated service implementations.
+	 *
+	 * @param serviceInterfaceType the implemented interface, which may inherit the method
+	 */
+	public JMSMethodInvokerAdapter<Object> createMethodInvoker(Class<?> serviceInterfaceType, Method method) {
+		return inspectMethod(serviceInterfaceType, method);
+	}
+
+	/**
+	 * @deprecated records the metrics of inherited methods under the declaring interface, use
+	 * {@link #createMethodInvoker(Class, Method)}
+	 */
+	@Deprecated
+	public JMSMethodInvokerAdapter<Object> createMethodInvoker(Method method) {
+		return inspectMethod(method.getDeclaringClass(), method);
+	}
+
+	private <T> T createGeneratedProxy(Class<T> serviceInterfaceType) {
+		Class<?> generatedType;
+		try {
+			generatedType = Class.forName(JMSServiceProcessor.getGeneratedName(serviceInterfaceType.getName()), true, serviceInterfaceType.getClassLoader());
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		try {
+			return serviceInterfaceType.cast(generatedType.getConstructor(JMSServiceAdapterFactory.class).newInstance(this));
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new JMSServiceException(e.getCause());
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new JMSServiceException("generated implementation " + generatedType.getName() + " of " + serviceInterfaceType.getName() + " is not usable", e);
+		}
 	}
 	
 	class JMSInvocationHandler implements InvocationHandler {
 		
 		final Map<Method, JMSMethodInvokerAdapter<Object>> method2Adapter = new HashMap<>();
 		
-		public JMSInvocationHandler(Collection<Class<?>> interfaces) {
+		public JMSInvocationHandler(Class<?> serviceInterfaceType, Collection<Class<?>> interfaces) {
 			for (Class<?> interfaze : interfaces) {
 				Method[] methods = interfaze.getMethods();
 				for (Method method : methods) {
-					method2Adapter.put(method, inspectMethod(method));
+					if (!method2Adapter.containsKey(method)) {
+						method2Adapter.put(method, inspectMethod(serviceInterfaceType, method));
+					}
 				}
 			}
 		}
@@ -80,120 +265,273 @@ public class JMSServiceAdapterFactory {
 			}
 			return jmsMethodInvokerAdapter.invoke(args);
 		}
-
-		private <T> JMSMethodInvokerAdapter<T> inspectMethod(Method method) {
-			if (!(Future.class.isAssignableFrom(method.getReturnType()) || void.class.equals(method.getReturnType()))) {
-				throw new JMSServiceException("return type of method " + 
-						method + " is not void or subclass of java.util.concurrent.Future ");
+		
+	}
+	
+	private <T> JMSMethodInvokerAdapter<T> inspectMethod(Class<?> serviceInterfaceType, Method method) {
+		Class<?> methodReturnType = method.getReturnType();
+		boolean completionStage = !methodReturnType.isAssignableFrom(JMSFuture.class) && methodReturnType.isAssignableFrom(CompletableFuture.class);
+		Class<?> streamType = methodReturnType == JMSReplyStream.class || methodReturnType == Iterator.class || methodReturnType == Stream.class ? methodReturnType : null;
+		if (!(methodReturnType.isAssignableFrom(JMSFuture.class) || completionStage || streamType != null || void.class.equals(methodReturnType))) {
+			throw new JMSServiceException("return type of method " + 
+					method + " is not void, java.util.concurrent.Future, JMSFuture, CompletableFuture, CompletionStage, JMSReplyStream, Iterator or Stream");
+		}
+		
+		Type retrunType = inspectFutureReturnType(method);
+		
+		int destinationIndex = -1;
+		int messageBodyIndex = -1;
+		int messageHeadersIndex = -1;
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		
+		for (int i = 0; i < parameterTypes.length; i++) {
+			Class<?> parameterType = parameterTypes[i];
+			if (parameterType.isAssignableFrom(Destination.class)) {
+				destinationIndex = i;
+			} else if (Map.class.isAssignableFrom(parameterType) &&  isMessageHeadersParam(method, i)) {
+				messageHeadersIndex = i;
+			} else {
+				messageBodyIndex = i;
 			}
 			
-			Class<T> retrunType = inspectFutureReturnType(method);
-			
-			ParameterRead<Destination> destination = new ParameterReadNull<>();
-			ParameterRead<Object> messageBody = new ParameterReadNull<>();
-			ParameterRead<Map<String, Object>> messageHeaders = new ParameterReadNull<>();
-			Class<?>[] parameterTypes = method.getParameterTypes();
-			
-			for (int i = 0; i < parameterTypes.length; i++) {
-				Class<?> parameterType = parameterTypes[i];
-				final int paramIndex = i;
-				if (parameterType.isAssignableFrom(Destination.class)) {
-					
-					destination = new ParameterRead<Destination>() {
-
-						@Override
-						public Destination read(Object[] args) {
-							return (Destination) args[paramIndex];
-						}
-						
-					};
-				} else if (Map.class.isAssignableFrom(parameterType) &&  isMessageHeadersParam(method, i)) {
-					messageHeaders = new ParameterRead<Map<String, Object>>() {
-
-						@SuppressWarnings("unchecked")
-						@Override
-						public Map<String, Object> read(Object[] args) {
-							return (Map<String, Object>) args[paramIndex];
-						}
-						
-					};
-				} else {
-					messageBody = new ParameterRead<Object>() {
-
-						@Override
-						public Object read(Object[] args) {
-							return args[paramIndex];
-						}
-						
-					};
-				}
-				
-			}
-			long timeout = defaultTimeout;
-			return new JMSMethodInvokerAdapter<T>(destination, messageBody, messageHeaders, retrunType, timeout);
 		}
+		long timeout = defaultTimeout;
+		// readers and writers of the method's types are resolved once
+		JMSBodyMapper methodMapper = objectMapper.bind(retrunType, messageBodyIndex != -1 ? method.getGenericParameterTypes()[messageBodyIndex] : null);
+		JMSMethodInvokerAdapter<T> invokerAdapter = new JMSMethodInvokerAdapter<T>(methodMapper, destinationIndex, messageBodyIndex, messageHeadersIndex, retrunType, timeout, completionStage,
+				streamType, metrics.getMethodMetrics(serviceInterfaceType, method));
+		// the listener routes by the called method
+		JMSOperation operation = method.getAnnotation(JMSOperation.class);
+		String operationName = operation != null ? operation.value() : method.getName();
+		invokerAdapter.jmsFutureCallAdapter.setOperation(operationName);
+		invokerAdapter.jmsFutureCallAdapter.setCompression(compression);
+		invokerAdapter.jmsFutureCallAdapter.setChunking(chunking);
+		invokerAdapter.batchSender = createBatchSender(method, methodMapper);
+		if (invokerAdapter.batchSender != null) {
+			invokerAdapter.batchSender.setOperation(operationName);
+			invokerAdapter.batchSender.setCompression(compression);
+			invokerAdapter.batchSender.setCallback(batchCallback);
+		} else if (void.class.equals(method.getReturnType())) {
+			invokerAdapter.asyncSender = asyncSender;
+		}
+		if (isCoalesced(method, streamType != null)) {
+			invokerAdapter.coalescer = new JMSRequestCoalescer<>(invokerAdapter.jmsFutureCallAdapter, methodMapper, timeout, invokerAdapter.methodMetrics);
+		}
+		invokerAdapter.replyCache = createReplyCache(method, streamType != null, invokerAdapter.methodMetrics);
+		invokerAdapter.limiter = methodLimiters.containsKey(method.getName()) ? methodLimiters.get(method.getName()) : limiter;
+		return invokerAdapter;
+	}
 
-		private boolean isMessageHeadersParam(Method method, int i) {
-			List<Annotation> annotations = Arrays.asList(method.getParameterAnnotations()[i]);
-			for (Annotation annotation : annotations) {
-				if (annotation.annotationType() == JMSMessageHeaders.class) {
-					return true;
-				}
+	private <T> JMSReplyCache<T> createReplyCache(Method method, boolean stream, JMSMethodMetrics methodMetrics) {
+		boolean future = !void.class.equals(method.getReturnType()) && !stream;
+		JMSCached cached = method.getAnnotation(JMSCached.class);
+		if (cached != null && !future) {
+			throw new JMSServiceException("method " + method + " is annotated with @JMSCached, but only methods returning a future can be cached");
+		}
+		if (cached == null && future) {
+			cached = method.getDeclaringClass().getAnnotation(JMSCached.class);
+		}
+		if (cached == null) {
+			return null;
+		}
+		JMSReplyCache<T> replyCache = new JMSReplyCache<>(cached.ttlMs(), cached.maxEntries(), methodMetrics);
+		replyCaches.add(replyCache);
+		return replyCache;
+	}
+
+	private boolean isCoalesced(Method method, boolean stream) {
+		boolean future = !void.class.equals(method.getReturnType()) && !stream;
+		if (method.isAnnotationPresent(JMSCoalesced.class)) {
+			if (!future) {
+				throw new JMSServiceException("method " + method + " is annotated with @JMSCoalesced, but only methods returning a future can be coalesced");
 			}
-			return false;
+			return true;
 		}
+		return future && method.getDeclaringClass().isAnnotationPresent(JMSCoalesced.class);
+	}
 
-		private <T> Class<T> inspectFutureReturnType(Method method) {
-			Type returnType = method.getGenericReturnType();
-			if (returnType == void.class) {
-				return null;
+	private JMSBatchSender createBatchSender(Method method, JMSBodyMapper methodMapper) {
+		JMSBatched batched = method.getAnnotation(JMSBatched.class);
+		boolean fireAndForget = void.class.equals(method.getReturnType());
+		if (batched != null && !fireAndForget) {
+			throw new JMSServiceException("method " + method + " is annotated with @JMSBatched, but only void methods can be batched");
+		}
+		if (batched == null && fireAndForget) {
+			batched = method.getDeclaringClass().getAnnotation(JMSBatched.class);
+		}
+		JMSBatchSender batchSender = null;
+		if (batched != null) {
+			batchSender = new JMSBatchSender(connectionPool.getConnectionFactory(), methodMapper, batched.maxBatchSize(), batched.lingerMs());
+		} else if (fireAndForget && defaultBatchSize > 0) {
+			batchSender = new JMSBatchSender(connectionPool.getConnectionFactory(), methodMapper, defaultBatchSize, defaultLingerMs);
+		}
+		if (batchSender != null) {
+			batchSenders.add(batchSender);
+		}
+		return batchSender;
+	}
+
+	private boolean isMessageHeadersParam(Method method, int i) {
+		List<Annotation> annotations = Arrays.asList(method.getParameterAnnotations()[i]);
+		for (Annotation annotation : annotations) {
+			if (annotation.annotationType() == JMSMessageHeaders.class) {
+				return true;
 			}
-			ParameterizedType genericReturnType = (ParameterizedType) returnType;
-			@SuppressWarnings("unchecked")
-			Class<T> retrunType = (Class<T>) genericReturnType.getActualTypeArguments()[0];
-			return retrunType;
 		}
-		
+		return false;
+	}
+
+	/**
+	 * @return the type argument of the returned future or stream, generic types like <code>List&lt;Order&gt;</code> included
+	 */
+	private Type inspectFutureReturnType(Method method) {
+		Type returnType = method.getGenericReturnType();
+		if (returnType == void.class) {
+			return null;
+		}
+		if (!(returnType instanceof ParameterizedType)) {
+			// a raw future has no reply type to bind
+			return Object.class;
+		}
+		return ((ParameterizedType) returnType).getActualTypeArguments()[0];
 	}
 	
-	class JMSMethodInvokerAdapter<T> {
-		private final ParameterRead<Destination> destination;
-		private final ParameterRead<Object> messageBody;
-		private final ParameterRead<Map<String, Object>> messageHeaders;
+	/**
+	 * The precomputed call of one service method. Dynamic proxies pass the call arguments,
+	 * generated implementations pass the destination, body and header arguments directly.
+	 */
+	public class JMSMethodInvokerAdapter<T> {
+		private final JMSBodyMapper methodMapper;
+		private final int destinationIndex;
+		private final int messageBodyIndex;
+		private final int messageHeadersIndex;
+		private final boolean completionStage;
+		private final Class<?> streamType;
+		private final JMSMethodMetrics methodMetrics;
 		private JMSJavaFutureAdapter<T> jmsFutureCallAdapter;
+		private JMSBatchSender batchSender;
+		private JMSAsyncSender asyncSender;
+		private JMSRequestCoalescer<T> coalescer;
+		private JMSReplyCache<T> replyCache;
+		private JMSLimiter limiter;
 
-		public JMSMethodInvokerAdapter(ParameterRead<Destination> destination, ParameterRead<Object> messageBody,
-				ParameterRead<Map<String, Object>> messageHeaders, Class<T> responseType, long timeout) {
+		JMSMethodInvokerAdapter(JMSBodyMapper methodMapper, int destinationIndex, int messageBodyIndex, int messageHeadersIndex,
+				Type responseType, long timeout, boolean completionStage, Class<?> streamType, JMSMethodMetrics methodMetrics) {
 			super();
-			this.destination = destination;
-			this.messageBody = messageBody;
-			this.messageHeaders = messageHeaders;
-			jmsFutureCallAdapter = new JMSJavaFutureAdapter<>(objectMapper, connectionFactory, responseType, timeout);
+			this.methodMapper = methodMapper;
+			this.destinationIndex = destinationIndex;
+			this.messageBodyIndex = messageBodyIndex;
+			this.messageHeadersIndex = messageHeadersIndex;
+			this.completionStage = completionStage;
+			this.streamType = streamType;
+			this.methodMetrics = methodMetrics;
+			jmsFutureCallAdapter = new JMSJavaFutureAdapter<>(methodMapper, connectionPool, replyChannel, responseType, timeout, methodMetrics);
+		}
+		
+		@SuppressWarnings("unchecked")
+		Object invoke(Object[] args) {
+			return call(destinationIndex != -1 ? (Destination) args[destinationIndex] : null,
+					messageBodyIndex != -1 ? args[messageBodyIndex] : null,
+					messageHeadersIndex != -1 ? (Map<String, Object>) args[messageHeadersIndex] : null);
 		}
 		
-		public JMSFuture<T> invoke(Object[] args) {
-			Destination dst = destination.read(args);
+		/**
+		 * @param destination the destination or null to send to the default destination
+		 * @return the value to be returned by the service method: null, the {@link JMSFuture}, its {@link CompletableFuture},
+		 * the {@link JMSReplyStream} or its {@link Stream}
+		 */
+		public Object call(Destination destination, Object body, Map<String, Object> headers) {
+			methodMetrics.increment(Event.CALL);
+			Destination dst = destination;
 			if (dst == null) {
 				dst = defaultDestination;
 			}
-			Map<String, Object> headers = messageHeaders.read(args);
-			Object body = messageBody.read(args);
-			return jmsFutureCallAdapter.send(dst, headers, body);
+			if (batchSender != null) {
+				batchSender.send(dst, headers, body);
+				return null;
+			}
+			if (asyncSender != null) {
+				asyncSender.send(jmsFutureCallAdapter, dst, headers, body);
+				return null;
+			}
+			if (streamType != null) {
+				acquire();
+				JMSReplyStream<T> replyStream;
+				try {
+					replyStream = jmsFutureCallAdapter.stream(dst, headers, body);
+				} finally {
+					release();
+				}
+				return streamType == Stream.class ? replyStream.stream() : replyStream;
+			}
+			JMSFuture<T> future = replyCache != null ? sendCached(dst, headers, body) : send(null, dst, headers, body);
+			if (future != null && completionStage) {
+				return future.toCompletableFuture();
+			}
+			return future;
 		}
 		
-	}
-	
-	static interface ParameterRead<T> {
-		
-		T read(Object[] args);
+		private JMSFuture<T> sendCached(Destination destination, Map<String, Object> headers, Object body) {
+			JMSRequestKey key = JMSRequestKey.of(methodMapper, destination, headers, body);
+			JMSFuture<T> cached = replyCache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+			// a reply to a request sent before the cache is cleared is not cached
+			long generation = replyCache.getGeneration();
+			JMSFuture<T> future = send(key, destination, headers, body);
+			replyCache.cache(key, future, generation);
+			return future;
+		}
+
+		private JMSFuture<T> send(JMSRequestKey key, Destination destination, Map<String, Object> headers, Object body) {
+			final long start = acquire();
+			JMSFuture<T> future;
+			try {
+				future = sendUnlimited(key, destination, headers, body);
+			} catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+			// only completed replies are round trips, fire and forget calls are released once sent
+			if (limiter != null && (future == null || !future.onDone(() -> release(start)))) {
+				release();
+			}
+			return future;
+		}
+
+		private JMSFuture<T> sendUnlimited(JMSRequestKey key, Destination destination, Map<String, Object> headers, Object body) {
+			if (coalescer == null) {
+				return jmsFutureCallAdapter.send(destination, headers, body);
+			}
+			return key != null ? coalescer.send(key, destination, headers, body) : coalescer.send(destination, headers, body);
+		}
 		
-	}
-	
-	static class ParameterReadNull<T> implements ParameterRead<T> {
+		/**
+		 * @return the time the permit was acquired
+		 */
+		private long acquire() {
+			if (limiter != null) {
+				try {
+					limiter.acquire();
+				} catch (JMSServiceException e) {
+					methodMetrics.increment(Event.REJECTED);
+					throw e;
+				}
+			}
+			return System.nanoTime();
+		}
 
-		@Override
-		public T read(Object[] args) {
-			return null;
+		private void release(long start) {
+			if (limiter != null) {
+				limiter.release(System.nanoTime() - start);
+			}
+		}
+		
+		private void release() {
+			if (limiter != null) {
+				limiter.release();
+			}
 		}
 		
 	}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates an implementation of every interface annotated with {@link JMSService}.
+ *
+ * The generated class binds each method once to a {@link JMSServiceAdapterFactory} and passes the
+ * destination, body and header arguments, whose positions are resolved at compile time, straight to
+ * it. Calls need no reflection, and a <code>reflect-config.json</code> is written along with it so
+ * the factory finds the class in a GraalVM native image as well.
+ *
+ * @author sso
+ */
+@SupportedAnnotationTypes("de.adorsys.jmspojo.JMSService")
+public class JMSServiceProcessor extends AbstractProcessor {
+
+	private static final String GENERATED_SUFFIX = "_JMSProxy";
+
+	/**
+	 * @param serviceInterfaceName the binary name of a service interface
+	 * @return the binary name of its generated implementation, nested names are joined by '_'
+	 */
+	static String getGeneratedName(String serviceInterfaceName) {
+		int packageEnd = serviceInterfaceName.lastIndexOf('.') + 1;
+		return serviceInterfaceName.substring(0, packageEnd) + serviceInterfaceName.substring(packageEnd).replace('$', '_') + GENERATED_SUFFIX;
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(JMSService.class)) {
+			if (element.getKind() != ElementKind.INTERFACE) {
+				error(element, "@JMSService is only allowed on interfaces");
+			} else if (!((TypeElement) element).getTypeParameters().isEmpty()) {
+				error(element, "generic JMS service interfaces are not supported");
+			} else {
+				try {
+					generate((TypeElement) element);
+				} catch (IOException e) {
+					error(element, "failed to generate the JMS service implementation: " + e.getMessage());
+				}
+			}
+		}
+		return true;
+	}
+
+	private void generate(TypeElement serviceInterface) throws IOException {
+		Types types = processingEnv.getTypeUtils();
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(serviceInterface);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String generatedName = getGeneratedName(processingEnv.getElementUtils().getBinaryName(serviceInterface).toString());
+		String simpleName = generatedName.substring(generatedName.lastIndexOf('.') + 1);
+		String interfaceName = types.erasure(serviceInterface.asType()).toString();
+
+		Set<String> signatures = new HashSet<>();
+		StringBuilder fields = new StringBuilder();
+		StringBuilder bindings = new StringBuilder();
+		StringBuilder methods = new StringBuilder();
+		int index = 0;
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(serviceInterface))) {
+			if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+				// default methods are inherited, methods of Object are implemented by Object
+				continue;
+			}
+			ExecutableType methodType = (ExecutableType) types.asMemberOf((DeclaredType) serviceInterface.asType(), method);
+			StringBuilder parameterClasses = new StringBuilder();
+			for (VariableElement parameter : method.getParameters()) {
+				parameterClasses.append(", ").append(types.erasure(parameter.asType())).append(".class");
+			}
+			if (!signatures.add(method.getSimpleName() + parameterClasses.toString())) {
+				// inherited from more than one interface
+				continue;
+			}
+			String field = "method" + index++;
+			fields.append("\tprivate final JMSServiceAdapterFactory.JMSMethodInvokerAdapter<Object> ").append(field).append(";\n");
+			bindings.append("\t\t\t").append(field).append(" = factory.createMethodInvoker(").append(interfaceName).append(".class, ")
+					.append(interfaceName).append(".class.getMethod(\"")
+					.append(method.getSimpleName()).append('"').append(parameterClasses).append("));\n");
+			appendMethod(methods, method, methodType, field);
+		}
+
+		Writer source = processingEnv.getFiler().createSourceFile(generatedName, serviceInterface).openWriter();
+		try (PrintWriter out = new PrintWriter(source)) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("import de.adorsys.jmspojo.JMSServiceAdapterFactory;");
+			out.println("import de.adorsys.jmspojo.JMSServiceException;");
+			out.println();
+			out.println("/**");
+			out.println(" * JMS implementation of {@link " + interfaceName + "} generated by " + getClass().getName() + ".");
+			out.println(" */");
+			out.println("@SuppressWarnings(\"unchecked\")");
+			out.println("public final class " + simpleName + " implements " + interfaceName + " {");
+			out.println();
+			out.print(fields);
+			out.println();
+			out.println("\tpublic " + simpleName + "(JMSServiceAdapterFactory factory) {");
+			if (index > 0) {
+				out.println("\t\ttry {");
+				out.print(bindings);
+				out.println("\t\t} catch (NoSuchMethodException e) {");
+				out.println("\t\t\tthrow new JMSServiceException(e);");
+				out.println("\t\t}");
+			}
+			out.println("\t}");
+			out.print(methods);
+			out.println();
+			out.println("}");
+		}
+
+		String reflectConfig = "[\n"
+				+ "  {\"name\": \"" + generatedName + "\", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": [\"" + JMSServiceAdapterFactory.class.getName() + "\"]}]},\n"
+				+ "  {\"name\": \"" + processingEnv.getElementUtils().getBinaryName(serviceInterface) + "\", \"allPublicMethods\": true}\n"
+				+ "]\n";
+		try (Writer config = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+				"META-INF/native-image/de.adorsys.jmspojo/" + generatedName + "/reflect-config.json", serviceInterface).openWriter()) {
+			config.write(reflectConfig);
+		}
+	}
+
+	private void appendMethod(StringBuilder out, ExecutableElement method, ExecutableType methodType, String field) {
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror destinationType = processingEnv.getElementUtils().getTypeElement("javax.jms.Destination").asType();
+		TypeMirror mapType = types.erasure(processingEnv.getElementUtils().getTypeElement("java.util.Map").asType());
+
+		// the same parameter roles as resolved by JMSServiceAdapterFactory at runtime
+		String destination = "null";
+		String body = "null";
+		String headers = "null";
+		StringBuilder parameters = new StringBuilder();
+		List<? extends TypeMirror> parameterTypes = methodType.getParameterTypes();
+		for (int i = 0; i < parameterTypes.size(); i++) {
+			TypeMirror parameterType = types.erasure(method.getParameters().get(i).asType());
+			String parameter = "arg" + i;
+			parameters.append(i > 0 ? ", " : "").append(parameterTypes.get(i)).append(' ').append(parameter);
+			if (types.isAssignable(destinationType, parameterType)) {
+				destination = "(javax.jms.Destination) " + parameter;
+			} else if (types.isAssignable(parameterType, mapType) && isMessageHeadersParam(method.getParameters().get(i))) {
+				headers = "(java.util.Map<String, Object>) (java.util.Map<?, ?>) " + parameter;
+			} else {
+				body = parameter;
+			}
+		}
+
+		out.append("\n\t@Override\n\tpublic ");
+		List<? extends TypeParameterElement> typeParameters = method.getTypeParameters();
+		if (!typeParameters.isEmpty()) {
+			out.append('<');
+			for (int i = 0; i < typeParameters.size(); i++) {
+				TypeParameterElement typeParameter = typeParameters.get(i);
+				out.append(i > 0 ? ", " : "").append(typeParameter.getSimpleName());
+				List<? extends TypeMirror> bounds = typeParameter.getBounds();
+				for (int j = 0; j < bounds.size(); j++) {
+					if (!"java.lang.Object".equals(bounds.get(j).toString())) {
+						out.append(j > 0 ? " & " : " extends ").append(bounds.get(j));
+					}
+				}
+			}
+			out.append("> ");
+		}
+		TypeMirror returnType = methodType.getReturnType();
+		out.append(returnType).append(' ').append(method.getSimpleName()).append('(').append(parameters).append(')');
+		List<? extends TypeMirror> thrownTypes = methodType.getThrownTypes();
+		for (int i = 0; i < thrownTypes.size(); i++) {
+			out.append(i > 0 ? ", " : " throws ").append(thrownTypes.get(i));
+		}
+		out.append(" {\n\t\t");
+		if (returnType.getKind() != TypeKind.VOID) {
+			out.append("return (").append(returnType).append(") ");
+		}
+		out.append(field).append(".call(").append(destination).append(", ").append(body).append(", ").append(headers).append(");\n\t}\n");
+	}
+
+	private boolean isMessageHeadersParam(VariableElement parameter) {
+		for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+			if (JMSMessageHeaders.class.getName().equals(annotation.getAnnotationType().toString())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueReceiver;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.adorsys.jmspojo.JMSAsyncSender.FullQueuePolicy;
+
+public class JMSAsyncSenderTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private Queue testQueue;
+	private QueueReceiver receiver;
+	private JMSJavaFutureAdapter<Void> adapter;
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://asyncsendertest");
+		broker.setBrokerName("asyncsendertest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://asyncsendertest?create=false");
+		qc = cf.createQueueConnection();
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		testQueue = queueSession.createQueue("TestQueue");
+		receiver = queueSession.createReceiver(testQueue);
+		qc.start();
+		adapter = new JMSJavaFutureAdapter<Void>(OBJECT_MAPPER, JMSConnectionPool.unpooled(cf), null, null, 0);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testProxySendsInBackground() throws Exception {
+		final AtomicInteger acknowledged = new AtomicInteger();
+		final CountDownLatch sent = new CountDownLatch(10);
+		try (JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 2, 100, FullQueuePolicy.BLOCK)) {
+			asyncSender.setCallback((destination, body, failure) -> {
+				if (failure == null) {
+					acknowledged.incrementAndGet();
+				}
+				sent.countDown();
+			});
+			JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, testQueue, 5000);
+			factory.setAsyncSender(asyncSender);
+			JMSSampleService service = factory.generateJMSServiceProxy(JMSSampleService.class);
+			for (int i = 0; i < 10; i++) {
+				service.fireAndForget(new PingMessage("ping" + i));
+			}
+			assertTrue(sent.await(5, TimeUnit.SECONDS));
+			assertEquals(10, acknowledged.get());
+		}
+		for (int i = 0; i < 10; i++) {
+			TextMessage message = (TextMessage) receiver.receive(1000);
+			assertEquals("fireAndForget", message.getStringProperty(JMSMessageReceiver.OPERATION_PROPERTY));
+		}
+		assertNull(receiver.receive(100));
+	}
+
+	@Test
+	public void testSendRacingCloseIsCompleted() throws Exception {
+		final JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 1, 1000, FullQueuePolicy.BLOCK);
+		final List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<CompletableFuture<Void>>());
+		List<Thread> callers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread caller = new Thread(() -> {
+				try {
+					while (true) {
+						futures.add(asyncSender.send(adapter, testQueue, null, new PingMessage("racing")));
+					}
+				} catch (JMSServiceException e) {
+					// closed
+				}
+			});
+			callers.add(caller);
+			caller.start();
+		}
+		Thread.sleep(50);
+		asyncSender.close();
+		for (Thread caller : callers) {
+			caller.join(5000);
+		}
+		assertTrue(!futures.isEmpty());
+		synchronized (futures) {
+			for (CompletableFuture<Void> future : futures) {
+				// sent before the close or failed by it, never left pending
+				assertTrue(future.isDone());
+			}
+		}
+	}
+
+	@Test
+	public void testFullQueueFails() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		try (JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 1, 1, FullQueuePolicy.FAIL)) {
+			asyncSender.setCallback((destination, body, failure) -> {
+				blocked.countDown();
+				await(release);
+			});
+			asyncSender.send(adapter, testQueue, null, new PingMessage("blocking"));
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+			CompletableFuture<Void> queued = asyncSender.send(adapter, testQueue, null, new PingMessage("queued"));
+			try {
+				asyncSender.send(adapter, testQueue, null, new PingMessage("rejected"));
+				fail("JMSServiceException expected");
+			} catch (JMSServiceException e) {
+			}
+			release.countDown();
+			queued.get(5, TimeUnit.SECONDS);
+		}
+		assertNotNull(receiver.receive(1000));
+		assertNotNull(receiver.receive(1000));
+		assertNull(receiver.receive(100));
+	}
+
+	@Test
+	public void testFullQueueCallerRuns() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread caller = Thread.currentThread();
+		final AtomicInteger sentByCaller = new AtomicInteger();
+		try (JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 1, 1, FullQueuePolicy.CALLER_RUNS)) {
+			asyncSender.setCallback((destination, body, failure) -> {
+				if (Thread.currentThread() == caller) {
+					sentByCaller.incrementAndGet();
+					return;
+				}
+				blocked.countDown();
+				await(release);
+			});
+			asyncSender.send(adapter, testQueue, null, new PingMessage("blocking"));
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+			asyncSender.send(adapter, testQueue, null, new PingMessage("queued"));
+			CompletableFuture<Void> callerRun = asyncSender.send(adapter, testQueue, null, new PingMessage("caller"));
+			assertTrue(callerRun.isDone());
+			assertEquals(1, sentByCaller.get());
+			release.countDown();
+		}
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(receiver.receive(1000));
+		}
+	}
+
+	@Test
+	public void testCloseSendsQueued() throws JMSException {
+		JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 1, 100, FullQueuePolicy.BLOCK);
+		for (int i = 0; i < 5; i++) {
+			asyncSender.send(adapter, testQueue, null, new PingMessage("closing" + i));
+		}
+		asyncSender.close();
+		assertEquals(0, asyncSender.getQueuedCount());
+		for (int i = 0; i < 5; i++) {
+			assertNotNull(receiver.receive(1000));
+		}
+	}
+
+	@Test(expected = JMSServiceException.class)
+	public void testClosedRejectsSend() {
+		JMSAsyncSender asyncSender = new JMSAsyncSender(cf, 1, 100, FullQueuePolicy.BLOCK);
+		asyncSender.close();
+		asyncSender.send(adapter, testQueue, null, new PingMessage("late"));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
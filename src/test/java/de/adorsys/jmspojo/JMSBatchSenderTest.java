@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueReceiver;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JMSBatchSenderTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private Queue testQueue;
+	private QueueReceiver receiver;
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://batchtest");
+		broker.setBrokerName("batchtest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://batchtest?create=false");
+		qc = cf.createQueueConnection();
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		testQueue = queueSession.createQueue("TestQueue");
+		receiver = queueSession.createReceiver(testQueue);
+		qc.start();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testFlushWhenBatchIsFull() throws JMSException {
+		try (JMSBatchSender batchSender = new JMSBatchSender(cf, OBJECT_MAPPER, 3, 60000)) {
+			batchSender.send(testQueue, null, new PingMessage("ping1"));
+			batchSender.send(testQueue, null, new PingMessage("ping2"));
+			assertEquals(2, batchSender.getBufferedCount());
+			assertNull(receiver.receive(100));
+
+			batchSender.send(testQueue, null, new PingMessage("ping3"));
+			assertEquals(0, batchSender.getBufferedCount());
+			for (int i = 1; i <= 3; i++) {
+				TextMessage message = (TextMessage) receiver.receive(1000);
+				assertEquals(new PingMessage("ping" + i), OBJECT_MAPPER.deserialize(message.getText(), PingMessage.class));
+			}
+		}
+	}
+
+	@Test
+	public void testFlushAfterLinger() throws JMSException {
+		try (JMSBatchSender batchSender = new JMSBatchSender(cf, OBJECT_MAPPER, 100, 50)) {
+			Map<String, Object> properties = new HashMap<>();
+			properties.put("audit", true);
+			batchSender.send(testQueue, properties, new PingMessage("lingering"));
+
+			TextMessage message = (TextMessage) receiver.receive(1000);
+			assertNotNull(message);
+			assertEquals(true, message.getBooleanProperty("audit"));
+			assertEquals(0, batchSender.getBufferedCount());
+		}
+	}
+
+	@Test
+	public void testCloseFlushes() throws JMSException {
+		JMSBatchSender batchSender = new JMSBatchSender(cf, OBJECT_MAPPER, 100, 60000);
+		batchSender.send(testQueue, null, new PingMessage("closing"));
+		batchSender.close();
+		assertNotNull(receiver.receive(1000));
+	}
+
+	@Test
+	public void testFailedBatchIsReportedPerMessage() throws Exception {
+		List<Object> failed = new CopyOnWriteArrayList<>();
+		try (JMSBatchSender batchSender = new JMSBatchSender(new FailingConnectionFactory(), OBJECT_MAPPER, 2, 60000)) {
+			batchSender.setCallback((destination, body, failure) -> {
+				assertNotNull(failure);
+				failed.add(body);
+			});
+			CompletableFuture<Void> first = batchSender.send(testQueue, null, new PingMessage("first"));
+			// the call filling the batch does not fail for the whole batch
+			CompletableFuture<Void> second = batchSender.send(testQueue, null, new PingMessage("second"));
+			assertFailed(first);
+			assertFailed(second);
+			assertEquals(2, failed.size());
+			assertEquals(new PingMessage("first"), failed.get(0));
+			assertEquals(new PingMessage("second"), failed.get(1));
+		}
+	}
+
+	@Test
+	public void testFailedLingeringBatchIsReported() throws Exception {
+		List<Object> failed = new CopyOnWriteArrayList<>();
+		try (JMSBatchSender batchSender = new JMSBatchSender(new FailingConnectionFactory(), OBJECT_MAPPER, 100, 50)) {
+			batchSender.setCallback((destination, body, failure) -> failed.add(body));
+			assertFailed(batchSender.send(testQueue, null, new PingMessage("lingering")));
+			assertEquals(1, failed.size());
+			assertEquals(0, batchSender.getBufferedCount());
+		}
+	}
+
+	@Test
+	public void testCommittedBatchCompletesFutures() throws Exception {
+		try (JMSBatchSender batchSender = new JMSBatchSender(cf, OBJECT_MAPPER, 2, 60000)) {
+			CompletableFuture<Void> first = batchSender.send(testQueue, null, new PingMessage("first"));
+			assertTrue(!first.isDone());
+			batchSender.send(testQueue, null, new PingMessage("second")).get(1, TimeUnit.SECONDS);
+			first.get(1, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void assertFailed(CompletableFuture<Void> sent) throws Exception {
+		try {
+			sent.get(1, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof JMSServiceException);
+			return;
+		}
+		throw new AssertionError("batch should have failed");
+	}
+
+	@Test(expected = JMSServiceException.class)
+	public void testClosedRejectsSend() {
+		JMSBatchSender batchSender = new JMSBatchSender(cf, OBJECT_MAPPER, 100, 60000);
+		batchSender.close();
+		batchSender.send(testQueue, null, new PingMessage("late"));
+	}
+
+	private static class FailingConnectionFactory implements ConnectionFactory {
+
+		@Override
+		public Connection createConnection() throws JMSException {
+			throw new JMSException("broker unavailable");
+		}
+
+		@Override
+		public Connection createConnection(String userName, String password) throws JMSException {
+			return createConnection();
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.adorsys.jmspojo.JMSConnectionPool.JMSPooledSession;
+
+public class JMSConnectionPoolTest {
+
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private QueueSession queueSession;
+	private Queue testQueue;
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://pooltest");
+		broker.setBrokerName("pooltest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://pooltest?create=false");
+		qc = cf.createQueueConnection();
+		queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		testQueue = queueSession.createQueue("TestQueue");
+		qc.start();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testSessionIsReused() throws JMSException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 2, 10000)) {
+			JMSPooledSession session = pool.borrow();
+			session.send(testQueue, session.getSession().createTextMessage("first"));
+			pool.release(session);
+
+			JMSPooledSession reused = pool.borrow();
+			assertSame(session, reused);
+			reused.send(testQueue, reused.getSession().createTextMessage("second"));
+			pool.release(reused);
+			assertEquals(1, pool.getConnectionCount());
+
+			TextMessage message = (TextMessage) queueSession.createReceiver(testQueue).receive(1000);
+			assertNotNull(message);
+			assertEquals("first", message.getText());
+		}
+	}
+
+	@Test
+	public void testPoolIsBounded() {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 1, 10000, 50)) {
+			JMSPooledSession session = pool.borrow();
+			try {
+				pool.borrow();
+				fail("pool exhaustion expected");
+			} catch (JMSServiceException e) {
+			}
+			pool.release(session);
+			pool.release(pool.borrow());
+		}
+	}
+
+	@Test
+	public void testBorrowWaitsWithoutIdleTimeout() throws InterruptedException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 1, 0)) {
+			final JMSPooledSession session = pool.borrow();
+			Thread releasing = new Thread(() -> {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+				pool.release(session);
+			});
+			releasing.start();
+			// sessions closed on release are still waited for
+			pool.release(pool.borrow());
+			releasing.join();
+		}
+	}
+
+	@Test
+	public void testIdleSessionsAreEvicted() throws InterruptedException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 2, 50)) {
+			JMSPooledSession session = pool.borrow();
+			pool.release(session);
+			assertEquals(1, pool.getIdleSessionCount());
+
+			Thread.sleep(100);
+			pool.evictIdle();
+			assertEquals(0, pool.getIdleSessionCount());
+			assertEquals(0, pool.getConnectionCount());
+			assertNotSame(session, pool.borrow());
+		}
+	}
+
+	@Test
+	public void testEvictionSurvivesHousekeeperStop() throws InterruptedException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 2, 50)) {
+			JMSResourceHousekeeper.stop();
+			pool.release(pool.borrow());
+			assertEquals(1, pool.getIdleSessionCount());
+			Thread.sleep(300);
+			assertEquals(0, pool.getIdleSessionCount());
+		}
+	}
+
+	@Test
+	public void testBrokenSessionIsNotReused() throws JMSException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 2, 10000)) {
+			JMSPooledSession session = pool.borrow();
+			TextMessage message = session.getSession().createTextMessage("broken");
+			session.getConnection().close();
+			try {
+				session.send(testQueue, message);
+				fail("closed connection expected");
+			} catch (JMSException e) {
+			}
+			pool.release(session);
+
+			JMSPooledSession fresh = pool.borrow();
+			assertNotSame(session, fresh);
+			fresh.send(testQueue, fresh.getSession().createTextMessage("fresh"));
+			pool.release(fresh);
+		}
+	}
+
+	@Test
+	public void testReplyToTemporaryQueueNotYetKnown() throws JMSException {
+		TemporaryQueue replyTo = queueSession.createTemporaryQueue();
+		final AtomicInteger sends = new AtomicInteger();
+		MessageProducer producer = (MessageProducer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { MessageProducer.class }, (proxy, method, args) -> {
+			if (method.getName().equals("send") && sends.incrementAndGet() < 3) {
+				throw new InvalidDestinationException("Cannot publish to a deleted Destination: " + replyTo);
+			}
+			return method.getName().startsWith("get") ? 0 : null;
+		});
+		JMSPooledSession.sendToTemporary(producer, replyTo, queueSession.createTextMessage("reply"), 0);
+		assertEquals(3, sends.get());
+		
+		// a deleted queue stays deleted
+		sends.set(Integer.MIN_VALUE);
+		try {
+			JMSPooledSession.sendToTemporary(producer, replyTo, queueSession.createTextMessage("reply"), 0);
+			fail("InvalidDestinationException expected");
+		} catch (InvalidDestinationException e) {
+		}
+	}
+
+	@Test
+	public void testUnpooledClosesOnRelease() {
+		try (JMSConnectionPool pool = JMSConnectionPool.unpooled(cf)) {
+			JMSPooledSession session = pool.borrow();
+			assertEquals(1, pool.getConnectionCount());
+			pool.release(session);
+			assertEquals(0, pool.getIdleSessionCount());
+			assertEquals(0, pool.getConnectionCount());
+		}
+	}
+
+	@Test
+	public void testConnectionWithoutExceptionListener() throws JMSException {
+		ConnectionFactory containerFactory = createContainerConnectionFactory();
+		JMSConnectionPool unpooled = JMSConnectionPool.unpooled(containerFactory);
+		JMSPooledSession unpooledSession = unpooled.borrow();
+		unpooledSession.send(testQueue, unpooledSession.getSession().createTextMessage("unpooled"));
+		unpooled.release(unpooledSession);
+		
+		try (JMSConnectionPool pool = new JMSConnectionPool(containerFactory, 1, 2, 10000)) {
+			JMSPooledSession session = pool.borrow();
+			pool.release(session);
+			assertSame(session, pool.borrow());
+			// nobody reports the failure, the connection is checked on borrow
+			session.getConnection().close();
+			pool.release(session);
+			
+			JMSPooledSession fresh = pool.borrow();
+			assertNotSame(session, fresh);
+			fresh.send(testQueue, fresh.getSession().createTextMessage("fresh"));
+			pool.release(fresh);
+		}
+	}
+
+	/**
+	 * Connections refusing exception listeners, like those of a Java EE container.
+	 */
+	private ConnectionFactory createContainerConnectionFactory() {
+		return (ConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ConnectionFactory.class }, (factory, factoryMethod, factoryArgs) -> {
+			Connection connection = (Connection) factoryMethod.invoke(cf, factoryArgs);
+			return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+				if (method.getName().equals("setExceptionListener")) {
+					throw new javax.jms.IllegalStateException("exception listeners are not allowed");
+				}
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			});
+		});
+	}
+
+}
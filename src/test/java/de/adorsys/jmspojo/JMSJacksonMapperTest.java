@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JMSJacksonMapperTest {
+
+	private static final Type PING_LIST = listOfPingMessages();
+
+	@Test
+	public void testDeserializeGenericType() {
+		JMSJacksonMapper mapper = new JMSJacksonMapper(new ObjectMapper());
+		List<PingMessage> messages = mapper.deserialize("[{\"ping\":\"ping1\"},{\"ping\":\"ping2\"}]", PING_LIST);
+		assertEquals(Arrays.asList(new PingMessage("ping1"), new PingMessage("ping2")), messages);
+	}
+
+	@Test
+	public void testReaderIsBuiltOncePerType() {
+		JMSJacksonMapper mapper = new JMSJacksonMapper(new ObjectMapper());
+		assertSame(mapper.getTypeCache().reader(PING_LIST), mapper.getTypeCache().reader(listOfPingMessages()));
+		assertSame(mapper.getTypeCache().writer(PingMessage.class), mapper.getTypeCache().writer(PingMessage.class));
+	}
+
+	@Test
+	public void testBindResolvesReaderAndWriterOnce() {
+		JMSJacksonBytesMapper mapper = new JMSJacksonBytesMapper(new ObjectMapper());
+		JMSBodyMapper bound = mapper.bind(PING_LIST, PingMessage.class);
+		// a bound mapper is a copy of the same class
+		assertTrue(bound instanceof JMSJacksonBytesMapper);
+		assertEquals(JMSJacksonMapper.CONTENT_TYPE, bound.getContentType());
+		JMSJacksonTypeCache boundCache = ((JMSJacksonBytesMapper) bound).getTypeCache();
+		assertSame(mapper.getTypeCache().reader(PING_LIST), boundCache.reader(listOfPingMessages()));
+		assertSame(mapper.getTypeCache().writer(PingMessage.class), boundCache.writer(PingMessage.class));
+		assertEquals(new PingMessage("ping"), ((JMSJacksonBytesMapper) bound).deserialize("{\"ping\":\"ping\"}", PingMessage.class));
+	}
+
+	@Test
+	public void testBinaryGenericType() {
+		JMSJacksonSmileMapper mapper = new JMSJacksonSmileMapper();
+		List<PingMessage> messages = Arrays.asList(new PingMessage("ping1"), new PingMessage("ping2"));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		mapper.serialize(messages, out);
+		assertEquals(messages, mapper.deserialize(new ByteArrayInputStream(out.toByteArray()), PING_LIST));
+	}
+
+	@Test
+	public void testContentTypes() {
+		assertEquals(JMSJacksonMapper.CONTENT_TYPE, new JMSJacksonMapper(new ObjectMapper()).getContentType());
+		assertEquals(JMSJacksonSmileMapper.CONTENT_TYPE, new JMSJacksonSmileMapper().getContentType());
+		// binary formats have no text representation
+		assertFalse(JMSObjectMapper.class.isAssignableFrom(JMSJacksonSmileMapper.class));
+		JMSObjectMapper customMapper = new JMSObjectMapper() {
+
+			@Override
+			public String serialize(Object object) {
+				return String.valueOf(object);
+			}
+
+			@Override
+			public <T> T deserialize(String serialized, Class<T> type) {
+				return type.cast(serialized);
+			}
+		};
+		// custom mappers are not labelled as JSON
+		assertNull(customMapper.getContentType());
+	}
+
+	private static Type listOfPingMessages() {
+		try {
+			return JMSSampleService.class.getMethod("pingAll", List.class).getGenericParameterTypes()[0];
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -17,12 +17,18 @@ package de.adorsys.jmspojo;
 
 import static org.junit.Assert.*;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
@@ -167,4 +173,92 @@ public class JMSJavaFutureAdapterTest {
 
 
 
+	@Test
+	public void testContinuationsRunOnHousekeepingThread() throws Exception {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue replylessQueue = session.createQueue("ReplylessQueue");
+		JMSJavaFutureAdapter<PingMessage> adapter = new JMSJavaFutureAdapter<PingMessage>(objectMapper, cf, PingMessage.class, TIMEOUT);
+		
+		JMSFuture<PingMessage> future = adapter.send(replylessQueue, null, new PingMessage("ping"));
+		CompletableFuture<String> thread = future.toCompletableFuture().thenApply(reply -> Thread.currentThread().getName());
+		Message request = session.createReceiver(replylessQueue).receive(1000);
+		session.createSender(null).send(request.getJMSReplyTo(), session.createTextMessage(((TextMessage) request).getText()));
+		
+		// the release of the reply consumer blocks, it must not run on the common pool
+		assertTrue(thread.get(1000, TimeUnit.MILLISECONDS).startsWith("jmspojo-housekeeper-task"));
+		session.close();
+	}
+
+	@Test
+	public void testHousekeeperStopFailsWaitingFutures() throws Exception {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue replylessQueue = session.createQueue("ReplylessQueue");
+		JMSJavaFutureAdapter<PingMessage> adapter = new JMSJavaFutureAdapter<PingMessage>(objectMapper, cf, PingMessage.class, TIMEOUT);
+		
+		CompletableFuture<PingMessage> reply = adapter.send(replylessQueue, null, new PingMessage("ping")).toCompletableFuture();
+		JMSResourceHousekeeper.stop();
+		try {
+			reply.get(1000, TimeUnit.MILLISECONDS);
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof JMSServiceException);
+		}
+		session.close();
+	}
+
+	@Test
+	public void testFailedSendDeletesTemporaryQueue() throws Exception {
+		try (JMSConnectionPool pool = new JMSConnectionPool(createFailingConnectionFactory(), 1, 2, 10000)) {
+			// another session keeps the shared connection and its temporary queues open
+			JMSConnectionPool.JMSPooledSession other = pool.borrow();
+			int temporaryQueues = broker.getAdminView().getTemporaryQueues().length;
+			JMSJavaFutureAdapter<PingMessage> adapter = new JMSJavaFutureAdapter<PingMessage>(objectMapper, pool, PingMessage.class, TIMEOUT);
+			try {
+				adapter.send(testQueue, null, new PingMessage("ping"));
+				fail("JMSServiceException expected");
+			} catch (JMSServiceException e) {
+			}
+			try {
+				adapter.stream(testQueue, null, new PingMessage("ping"));
+				fail("JMSServiceException expected");
+			} catch (JMSServiceException e) {
+			}
+			assertEquals(temporaryQueues, broker.getAdminView().getTemporaryQueues().length);
+			pool.release(other);
+		}
+	}
+
+	/**
+	 * Connections whose sessions fail to create producers, so every send fails.
+	 */
+	private ConnectionFactory createFailingConnectionFactory() {
+		return (ConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ConnectionFactory.class },
+				(factory, factoryMethod, factoryArgs) -> delegate(Connection.class, factoryMethod.invoke(cf, factoryArgs), (connection, method, args) -> {
+					Object result = method.invoke(connection, args);
+					if (!method.getName().equals("createSession")) {
+						return result;
+					}
+					return delegate(Session.class, result, (session, sessionMethod, sessionArgs) -> {
+						if (sessionMethod.getName().equals("createProducer")) {
+							throw new JMSException("send failed");
+						}
+						return sessionMethod.invoke(session, sessionArgs);
+					});
+				}));
+	}
+
+	private interface Delegation {
+		Object invoke(Object target, Method method, Object[] args) throws Exception;
+	}
+
+	private <T> T delegate(Class<T> type, Object target, Delegation delegation) {
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			try {
+				return delegation.invoke(target, method, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}));
+	}
+
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JMSLatencyHistogramTest {
+
+	@Test
+	public void testPercentiles() {
+		JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+		for (int i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(100000, histogram.getCount());
+		assertEquals(100000000L, histogram.getMax());
+		assertEquals(50000500.0, histogram.getMean(), 0.1);
+		assertWithinPrecision(50000000L, histogram.getValueAtPercentile(50));
+		assertWithinPrecision(99000000L, histogram.getValueAtPercentile(99));
+		assertWithinPrecision(99900000L, histogram.getValueAtPercentile(99.9));
+		assertEquals(100000000L, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testEmpty() {
+		JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0.0, histogram.getMean(), 0);
+	}
+
+	@Test
+	public void testBuckets() {
+		for (long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, Long.MAX_VALUE}) {
+			long highest = JMSLatencyHistogram.highestValue(JMSLatencyHistogram.index(value));
+			assertTrue(value + " <= " + highest, value <= highest);
+			assertWithinPrecision(value, highest);
+		}
+	}
+
+	private void assertWithinPrecision(long expected, long actual) {
+		assertTrue(expected + " ~ " + actual, Math.abs(actual - expected) <= expected / 32 + 1);
+	}
+
+}
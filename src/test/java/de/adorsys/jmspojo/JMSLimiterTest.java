@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class JMSLimiterTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	public void testAdaptiveLimitGrowsWhileFast() {
+		JMSAdaptiveLimiter limiter = new JMSAdaptiveLimiter(4, 1, 8, 0);
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < limiter.getLimit(); j++) {
+				limiter.acquire();
+			}
+			while (limiter.getInFlightCount() > 0) {
+				limiter.release(FAST);
+			}
+		}
+		assertEquals(8, limiter.getLimit());
+	}
+
+	@Test
+	public void testAdaptiveLimitShrinksWhenSlow() {
+		JMSAdaptiveLimiter limiter = new JMSAdaptiveLimiter(8, 2, 8, 0);
+		limiter.acquire();
+		limiter.release(FAST);
+		for (int i = 0; i < 20; i++) {
+			limiter.acquire();
+			limiter.release(SLOW);
+		}
+		assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testAdaptiveLimitFailsFast() {
+		JMSAdaptiveLimiter limiter = new JMSAdaptiveLimiter(1, 1, 1, 0);
+		limiter.acquire();
+		try {
+			limiter.acquire();
+			fail("JMSServiceException expected");
+		} catch (JMSServiceException e) {
+		}
+		limiter.release(FAST);
+		limiter.acquire();
+	}
+
+	@Test
+	public void testAdaptiveLimitQueuesBriefly() throws InterruptedException {
+		final JMSAdaptiveLimiter limiter = new JMSAdaptiveLimiter(1, 1, 1, 1000);
+		limiter.acquire();
+		Thread releasing = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+			}
+			limiter.release(FAST);
+		});
+		releasing.start();
+		limiter.acquire();
+		assertEquals(1, limiter.getInFlightCount());
+		releasing.join();
+	}
+
+	@Test
+	public void testRateLimit() {
+		JMSRateLimiter limiter = new JMSRateLimiter(20, 2, 100);
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			limiter.acquire();
+		}
+		// two calls of the burst, two waiting 50 ms each
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+
+		JMSRateLimiter failing = new JMSRateLimiter(1, 1, 0);
+		failing.acquire();
+		try {
+			failing.acquire();
+			fail("JMSServiceException expected");
+		} catch (JMSServiceException e) {
+		}
+	}
+
+}
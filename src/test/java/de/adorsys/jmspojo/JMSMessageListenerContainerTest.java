@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JMSMessageListenerContainerTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private static final int JMS_TIMEOUT = 5000;
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private Queue testQueue;
+	private JMSSampleService service;
+	private SlowPingService receiver;
+	private JMSMessageListenerContainer container;
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://containertest");
+		broker.setBrokerName("containertest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://containertest?create=false");
+		// every consumer gets one message at a time, prefetched messages would not be shared with new consumers
+		cf.getPrefetchPolicy().setQueuePrefetch(1);
+		testQueue = new ActiveMQQueue("TestQueue");
+		service = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, testQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSSampleService.class);
+		receiver = new SlowPingService();
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		if (container != null) {
+			container.close();
+		}
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	private JMSMessageListenerContainer createContainer(int minConcurrency, int maxConcurrency) {
+		JMSMessageListenerServiceAdapter<SlowPingService> adapter = JMSMessageListenerServiceAdapter.createAdapter(receiver, cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, minConcurrency, maxConcurrency);
+		container.setReceiveTimeout(50);
+		return container;
+	}
+
+	private void pingAll(int count) throws ExecutionException {
+		List<JMSFuture<PingMessage>> futures = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			futures.add(service.ping(new PingMessage("ping" + i)));
+		}
+		for (int i = 0; i < count; i++) {
+			try (JMSFuture<PingMessage> future = futures.get(i)) {
+				assertEquals(new PingMessage("ping" + i), future.get());
+			}
+		}
+	}
+
+	@Test
+	public void testScalesUpToMaxConcurrency() throws Exception {
+		createContainer(1, 4).start();
+		assertEquals(1, container.getConsumerCount());
+
+		pingAll(16);
+		assertTrue("parallel processing expected", receiver.maxConcurrent.get() > 1);
+		assertTrue(receiver.maxConcurrent.get() <= 4);
+		assertTrue(container.getConsumerCount() <= 4);
+	}
+
+	@Test
+	public void testScalesDownWhenIdle() throws Exception {
+		createContainer(1, 4).start();
+		pingAll(16);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (container.getConsumerCount() > 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, container.getConsumerCount());
+	}
+
+	@Test
+	public void testBoundedExecutor() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			createContainer(2, 8).setExecutor(executor);
+			container.start();
+			pingAll(16);
+			assertTrue(receiver.maxConcurrent.get() <= 2);
+		} finally {
+			container.close();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testVirtualThreads() throws Exception {
+		Assume.assumeTrue(JMSMessageListenerContainer.isVirtualThreadsSupported());
+		createContainer(2, 8).setVirtualThreads(true);
+		container.start();
+		pingAll(16);
+		assertTrue(receiver.maxConcurrent.get() > 1);
+	}
+
+	@Test
+	public void testCloseStopsConsumers() throws Exception {
+		createContainer(2, 2).start();
+		pingAll(2);
+		container.close();
+		assertEquals(0, container.getConsumerCount());
+		assertTrue(!container.isRunning());
+	}
+
+	@Test
+	public void testRecoversWhileStaleConsumerIsBusy() throws Exception {
+		createContainer(1, 1).setRecoveryInterval(0);
+		container.start();
+		JMSFuture<PingMessage> interrupted = service.ping(new PingMessage("interrupted"));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (receiver.concurrent.get() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		// the connection breaks while its only consumer processes a message
+		container.onException(new JMSException("connection lost"));
+		interrupted.close();
+		pingAll(2);
+		assertEquals(1, container.getConsumerCount());
+	}
+
+	@Test
+	public void testTransactedSession() throws Exception {
+		createContainer(1, 2).setSessionTransacted(true);
+		container.start();
+		pingAll(4);
+		Connection connection = cf.createConnection();
+		try {
+			connection.start();
+			Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+			// all requests are committed, none is left for redelivery
+			assertEquals(null, session.createConsumer(testQueue).receive(200));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void testOneContainerForAllOperations() throws Exception {
+		JMSMessageListenerServiceAdapter<SampleServiceReceiver> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleServiceReceiver(), cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, 1, 2);
+		container.start();
+
+		try (JMSFuture<PingMessage> future = service.ping(new PingMessage("ping"))) {
+			assertEquals(new PingMessage("ping"), future.get());
+		}
+		try (JMSFuture<List<PingMessage>> future = service.pingAll(Arrays.asList(new PingMessage("a"), new PingMessage("b")))) {
+			assertEquals(Arrays.asList(new PingMessage("b"), new PingMessage("a")), future.get());
+		}
+		try (JMSFuture<Void> future = service.fireAndWait(new PingMessage("wait"))) {
+			future.get();
+		}
+	}
+
+	@Test
+	public void testOperationOfServiceMethod() throws Exception {
+		JMSMessageListenerServiceAdapter<SampleServiceReceiver> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleServiceReceiver(), cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, 1, 1);
+		container.start();
+		RenamedPingService renamedService = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, testQueue, JMS_TIMEOUT).generateJMSServiceProxy(RenamedPingService.class);
+
+		try (JMSFuture<PingMessage> future = renamedService.echo(new PingMessage("echo"))) {
+			assertEquals(new PingMessage("echo"), future.get());
+		}
+		long start = System.currentTimeMillis();
+		try (JMSFuture<PingMessage> future = renamedService.unknown(new PingMessage("unknown"))) {
+			future.get();
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+			// answered by an error reply instead of running into the timeout
+			assertTrue(e.getMessage().contains("no receiver for operation unknown"));
+			assertTrue(System.currentTimeMillis() - start < JMS_TIMEOUT);
+		}
+	}
+
+	@Test
+	public void testReplyStream() throws Exception {
+		JMSMessageListenerServiceAdapter<SampleServiceReceiver> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleServiceReceiver(), cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, 1);
+		container.start();
+
+		try (JMSReplyStream<PingMessage> replies = service.pingStream(new PingMessage("1000"))) {
+			int count = 0;
+			while (replies.hasNext()) {
+				assertEquals(new PingMessage("ping" + count), replies.next());
+				count++;
+			}
+			assertEquals(1000, count);
+		}
+		try (Stream<PingMessage> lines = service.pingLines(new PingMessage("100"))) {
+			assertEquals(100, lines.count());
+		}
+		// a stream closed before its end drops the remaining replies
+		try (JMSReplyStream<PingMessage> replies = service.pingStream(new PingMessage("1000"))) {
+			assertEquals(new PingMessage("ping0"), replies.next());
+		}
+	}
+
+	@Test
+	public void testReplyStreamOfTransactedSession() throws Exception {
+		SampleServiceReceiver streamReceiver = new SampleServiceReceiver();
+		JMSMessageListenerServiceAdapter<SampleServiceReceiver> adapter = JMSMessageListenerServiceAdapter.createAdapter(streamReceiver, cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, 1);
+		container.setSessionTransacted(true);
+		container.start();
+
+		try (JMSReplyStream<PingMessage> replies = service.pingStream(new PingMessage("await"))) {
+			// elements are not held back until the request is committed
+			assertEquals(new PingMessage("ping0"), replies.next());
+			streamReceiver.firstElementConsumed.countDown();
+			assertEquals(new PingMessage("ping1"), replies.next());
+			assertTrue(!replies.hasNext());
+		}
+		assertTrue(streamReceiver.firstElementReceived);
+	}
+
+	@Test
+	public void testReplyStreamFailure() throws Exception {
+		JMSMessageListenerServiceAdapter<SampleServiceReceiver> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleServiceReceiver(), cf, OBJECT_MAPPER);
+		container = new JMSMessageListenerContainer(cf, testQueue, adapter, 1);
+		container.start();
+
+		try (JMSReplyStream<PingMessage> replies = service.pingStream(new PingMessage("fail"))) {
+			assertEquals(new PingMessage("ping0"), replies.next());
+			assertEquals(new PingMessage("ping1"), replies.next());
+			try {
+				replies.next();
+				fail("JMSServiceException expected");
+			} catch (JMSServiceException e) {
+				assertTrue(e.getMessage().contains("stream failed"));
+			}
+			assertTrue(!replies.hasNext());
+		}
+	}
+
+	public interface RenamedPingService {
+
+		@JMSOperation("ping")
+		JMSFuture<PingMessage> echo(PingMessage message);
+
+		JMSFuture<PingMessage> unknown(PingMessage message);
+
+	}
+
+	public static class SampleServiceReceiver {
+
+		private final CountDownLatch firstElementConsumed = new CountDownLatch(1);
+		private volatile boolean firstElementReceived;
+
+		@JMSMessageReceiver
+		public PingMessage ping(PingMessage message) {
+			return message;
+		}
+
+		@JMSMessageReceiver
+		public List<PingMessage> pingAll(List<PingMessage> messages) {
+			List<PingMessage> reversed = new ArrayList<>(messages);
+			Collections.reverse(reversed);
+			return reversed;
+		}
+
+		@JMSMessageReceiver
+		public void fireAndWait(PingMessage message) {
+		}
+
+		@JMSMessageReceiver
+		public Iterator<PingMessage> pingStream(final PingMessage message) {
+			final boolean fail = message.getPing().equals("fail");
+			final boolean await = message.getPing().equals("await");
+			final int count = fail ? Integer.MAX_VALUE : await ? 2 : Integer.parseInt(message.getPing());
+			return new Iterator<PingMessage>() {
+				private int next;
+
+				@Override
+				public boolean hasNext() {
+					if (fail && next == 2) {
+						throw new IllegalStateException("stream failed");
+					}
+					if (await && next == 1) {
+						// the second element is only produced once the caller has the first one
+						try {
+							firstElementReceived = firstElementConsumed.await(2, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+					return next < count;
+				}
+
+				@Override
+				public PingMessage next() {
+					return new PingMessage("ping" + next++);
+				}
+			};
+		}
+
+		@JMSMessageReceiver
+		public Stream<PingMessage> pingLines(PingMessage message) {
+			return IntStream.range(0, Integer.parseInt(message.getPing())).mapToObj(i -> new PingMessage("line" + i));
+		}
+	}
+
+	public static class SlowPingService {
+
+		private final AtomicInteger concurrent = new AtomicInteger();
+		private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+		@JMSMessageReceiver
+		public PingMessage ping(PingMessage message) throws InterruptedException {
+			int current = concurrent.incrementAndGet();
+			maxConcurrent.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(50);
+				return message;
+			} finally {
+				concurrent.decrementAndGet();
+			}
+		}
+	}
+
+}
@@ -20,10 +20,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
 import javax.jms.QueueConnection;
+import javax.jms.QueueReceiver;
 import javax.jms.QueueSession;
 import javax.jms.Session;
 import javax.jms.TemporaryQueue;
@@ -36,6 +46,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import de.adorsys.jmspojo.JMSJacksonMapper;
 import de.adorsys.jmspojo.JMSMessageHeaders;
@@ -94,6 +105,112 @@ public class JMSMessageListenerServiceAdapterTest {
 		assertEquals("{\"ping\":\"ping\"}", message.getText());
 	}
 	
+	@Test
+	public void testReplyThroughConsumerSession() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER);
+		Session transactedSession = qc.createSession(true, Session.SESSION_TRANSACTED);
+		MessageProducer replyProducer = transactedSession.createProducer(null);
+		adapter.onMessage(textMessage, transactedSession, replyProducer);
+		
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		// the reply is part of the transaction
+		assertNull(receiver.receive(200));
+		transactedSession.commit();
+		TextMessage message = (TextMessage) receiver.receive(1000);
+		assertNotNull(message);
+		assertEquals("{\"ping\":\"ping\"}", message.getText());
+		transactedSession.close();
+	}
+	
+	@Test
+	public void testReplyThroughConnectionPool() throws JMSException {
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER);
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 2, 10000)) {
+			adapter.setConnectionPool(pool);
+			QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+			for (int i = 0; i < 3; i++) {
+				TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping" + i)));
+				textMessage.setJMSReplyTo(reqlayQ);
+				adapter.onMessage(textMessage);
+				assertEquals("{\"ping\":\"ping" + i + "\"}", ((TextMessage) receiver.receive(1000)).getText());
+			}
+			// all replies were sent through one pooled session
+			assertEquals(1, pool.getConnectionCount());
+			assertEquals(1, pool.getIdleSessionCount());
+		}
+	}
+	
+	@Test
+	public void testRouteByOperation() throws JMSException {
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithOperations> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithOperations(), cf, OBJECT_MAPPER);
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		
+		TextMessage pingMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		pingMessage.setJMSReplyTo(reqlayQ);
+		pingMessage.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, "ping");
+		adapter.onMessage(pingMessage);
+		assertEquals("{\"ping\":\"ping\"}", ((TextMessage) receiver.receive(1000)).getText());
+		
+		TextMessage echoMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("echo")));
+		echoMessage.setJMSReplyTo(reqlayQ);
+		echoMessage.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, "echo");
+		adapter.onMessage(echoMessage);
+		assertEquals("echo", ((TextMessage) receiver.receive(1000)).getText());
+	}
+	
+	@Test(expected = JMSServiceException.class)
+	public void testRouteRejectsUnknownOperation() throws JMSException {
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithOperations> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithOperations(), cf, OBJECT_MAPPER);
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, "unknown");
+		adapter.onMessage(textMessage);
+	}
+	
+	@Test
+	public void testRouteAnswersUnknownOperation() throws JMSException {
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithOperations> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithOperations(), cf, OBJECT_MAPPER);
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		
+		TextMessage unknownMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		unknownMessage.setJMSReplyTo(reqlayQ);
+		unknownMessage.setStringProperty(JMSMessageReceiver.OPERATION_PROPERTY, "unknown");
+		adapter.onMessage(unknownMessage);
+		Message reply = receiver.receive(1000);
+		assertTrue(reply.getStringProperty("ERROR").contains("no receiver for operation unknown"));
+		
+		TextMessage missingMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		missingMessage.setJMSReplyTo(reqlayQ);
+		adapter.onMessage(missingMessage);
+		assertTrue(receiver.receive(1000).getStringProperty("ERROR").contains("no receiver for operation null"));
+	}
+	
+	@Test(expected = JMSServiceException.class)
+	public void testCreateAdapterRejectsDuplicateOperation() {
+		JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithDuplicateOperation(), cf, OBJECT_MAPPER);
+	}
+	
+	@Test
+	public void testReplyStream() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithStream> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithStream(), cf, OBJECT_MAPPER);
+		adapter.onMessage(textMessage);
+		
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		for (int i = 0; i < 3; i++) {
+			TextMessage message = (TextMessage) receiver.receive(1000);
+			assertEquals("{\"ping\":\"ping" + i + "\"}", message.getText());
+			assertTrue(!message.propertyExists(JMSReplyStream.END_OF_STREAM_PROPERTY));
+		}
+		TextMessage end = (TextMessage) receiver.receive(1000);
+		assertTrue(end.getBooleanProperty(JMSReplyStream.END_OF_STREAM_PROPERTY));
+		assertNull(end.getText());
+	}
+	
 	@Test
 	public void testCreateAdapterWithException() throws JMSException {
 		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
@@ -109,6 +226,19 @@ public class JMSMessageListenerServiceAdapterTest {
 		assertEquals("java.lang.RuntimeException: expected problem", message.getStringProperty("ERROR"));
 	}
 	
+	@Test
+	public void testEmptyBodyOfPrimitiveParameter() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage();
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithPrimitive> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithPrimitive(), cf, OBJECT_MAPPER);
+		adapter.onMessage(textMessage);
+		
+		TextMessage message = (TextMessage) queueSession.createReceiver(reqlayQ).receive(1000);
+		assertNotNull(message);
+		assertTrue(message.getStringProperty("ERROR").startsWith(JMSServiceException.class.getName()));
+	}
+	
 	@Test
 	public void testCreateAdapterVoid() throws JMSException {
 		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
@@ -142,6 +272,263 @@ public class JMSMessageListenerServiceAdapterTest {
 		assertNull(message.getText());
 	}
 	
+	@Test
+	public void testCreateAdapterWithBytesMapper() throws JMSException {
+		JMSJacksonBytesMapper bytesMapper = new JMSJacksonBytesMapper(new ObjectMapper());
+		BytesMessage bytesMessage = queueSession.createBytesMessage();
+		bytesMessage.writeBytes("{\"ping\":\"ping\"}".getBytes(StandardCharsets.UTF_8));
+		bytesMessage.setJMSReplyTo(reqlayQ);
+		
+		SampleMessageServiceWithReply service = new SampleMessageServiceWithReply();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, bytesMapper);
+		adapter.onMessage(bytesMessage);
+		
+		BytesMessage message = (BytesMessage) queueSession.createReceiver(reqlayQ).receive(1000);
+		assertNotNull(message);
+		assertNull(message.getStringProperty("ERROR"));
+		byte[] body = new byte[(int) message.getBodyLength()];
+		message.readBytes(body);
+		assertEquals("{\"ping\":\"ping\"}", new String(body, StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testCreateAdapterReadsBytesWithTextMapper() throws JMSException {
+		BytesMessage bytesMessage = queueSession.createBytesMessage();
+		bytesMessage.writeBytes("{\"ping\":\"ping\"}".getBytes(StandardCharsets.UTF_8));
+		bytesMessage.setJMSReplyTo(reqlayQ);
+		
+		SampleMessageServiceWithReply service = new SampleMessageServiceWithReply();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		adapter.onMessage(bytesMessage);
+		
+		TextMessage message = (TextMessage) queueSession.createReceiver(reqlayQ).receive(1000);
+		assertNotNull(message);
+		assertEquals("{\"ping\":\"ping\"}", message.getText());
+	}	
+	@Test
+	public void testCreateAdapterNegotiatesContentType() throws JMSException, IOException {
+		JMSJacksonSmileMapper smileMapper = new JMSJacksonSmileMapper();
+		BytesMessage smileMessage = queueSession.createBytesMessage();
+		smileMessage.writeBytes(new ObjectMapper(new SmileFactory()).writeValueAsBytes(new PingMessage("ping")));
+		smileMessage.setStringProperty(JMSObjectMapper.CONTENT_TYPE_PROPERTY, JMSJacksonSmileMapper.CONTENT_TYPE);
+		smileMessage.setJMSReplyTo(reqlayQ);
+		TextMessage jsonMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		jsonMessage.setJMSReplyTo(reqlayQ);
+		
+		SampleMessageServiceWithReply service = new SampleMessageServiceWithReply();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER, smileMapper);
+		adapter.onMessage(smileMessage);
+		adapter.onMessage(jsonMessage);
+		
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		BytesMessage smileReply = (BytesMessage) receiver.receive(1000);
+		assertEquals(JMSJacksonSmileMapper.CONTENT_TYPE, smileReply.getStringProperty(JMSObjectMapper.CONTENT_TYPE_PROPERTY));
+		byte[] body = new byte[(int) smileReply.getBodyLength()];
+		smileReply.readBytes(body);
+		assertEquals(new PingMessage("ping"), smileMapper.deserialize(new ByteArrayInputStream(body), PingMessage.class));
+		
+		TextMessage jsonReply = (TextMessage) receiver.receive(1000);
+		assertEquals(JMSJacksonMapper.CONTENT_TYPE, jsonReply.getStringProperty(JMSObjectMapper.CONTENT_TYPE_PROPERTY));
+		assertEquals("{\"ping\":\"ping\"}", jsonReply.getText());
+	}
+	
+	@Test(expected = JMSServiceException.class)
+	public void testCreateAdapterRejectsUnknownContentType() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage("ping");
+		textMessage.setStringProperty(JMSObjectMapper.CONTENT_TYPE_PROPERTY, "text/plain");
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER);
+		adapter.onMessage(textMessage);
+	}
+	@Test
+	public void testCreateAdapterWithGenericBody() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage("[{\"ping\":\"ping1\"},{\"ping\":\"ping2\"}]");
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithList> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithList(), cf, OBJECT_MAPPER);
+		adapter.onMessage(textMessage);
+		
+		TextMessage message = (TextMessage) queueSession.createReceiver(reqlayQ).receive(1000);
+		assertNotNull(message);
+		assertNull(message.getStringProperty("ERROR"));
+		assertEquals("ping1,ping2", message.getText());
+	}
+	
+	@Test
+	public void testCreateAdapterWithNonPublicService() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSMessageListenerServiceAdapter<SampleMessageServiceNonPublic> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceNonPublic(), cf, OBJECT_MAPPER);
+		adapter.onMessage(textMessage);
+		adapter.onMessage(textMessage);
+		
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		for (int i = 0; i < 2; i++) {
+			TextMessage message = (TextMessage) receiver.receive(1000);
+			assertNotNull(message);
+			assertNull(message.getStringProperty("ERROR"));
+			assertEquals("ping", message.getText());
+		}
+	}
+	
+	@Test
+	public void testCreateAdapterWithMetrics() throws JMSException {
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSReplyTo(reqlayQ);
+		
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER);
+		adapter.setMetrics(metrics);
+		adapter.onMessage(textMessage);
+		JMSMessageListenerServiceAdapter<SampleMessageServiceWithException> failingAdapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithException(), cf, OBJECT_MAPPER);
+		failingAdapter.setMetrics(metrics);
+		failingAdapter.onMessage(textMessage);
+		
+		assertEquals(1, metrics.getCount(SampleMessageServiceWithReply.class, "ping", JMSMetrics.Event.CALL));
+		assertEquals(1, metrics.getHistogram(SampleMessageServiceWithReply.class, "ping", JMSMetrics.Phase.DESERIALIZE).getCount());
+		assertEquals(1, metrics.getHistogram(SampleMessageServiceWithReply.class, "ping", JMSMetrics.Phase.DISPATCH).getCount());
+		assertEquals(1, metrics.getHistogram(SampleMessageServiceWithReply.class, "ping", JMSMetrics.Phase.SEND).getCount());
+		assertEquals(1, metrics.getCount(SampleMessageServiceWithException.class, "observe", JMSMetrics.Event.ERROR));
+	}
+	
+	@Test
+	public void testDuplicateIsAnsweredWithFirstReply() throws JMSException {
+		SampleMessageServiceCounting service = new SampleMessageServiceCounting();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceCounting> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		JMSDuplicateDetector detector = new JMSDuplicateDetector(100, 60000);
+		adapter.setDuplicateDetector(detector);
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		adapter.setMetrics(metrics);
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSMessageID("ID:redelivered-1");
+		textMessage.setJMSReplyTo(reqlayQ);
+		adapter.onMessage(textMessage);
+		adapter.onMessage(textMessage);
+		
+		assertEquals("{\"ping\":\"ping1\"}", ((TextMessage) receiver.receive(1000)).getText());
+		assertEquals("{\"ping\":\"ping1\"}", ((TextMessage) receiver.receive(1000)).getText());
+		assertEquals(1, service.calls);
+		assertEquals(1, detector.size());
+		assertEquals(1, metrics.getCount(SampleMessageServiceCounting.class, "ping", JMSMetrics.Event.DUPLICATE));
+	}
+	
+	@Test
+	public void testDuplicateIsNotRead() throws JMSException {
+		SampleMessageServiceCounting service = new SampleMessageServiceCounting();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceCounting> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		adapter.setDuplicateDetector(new JMSDuplicateDetector(100, 60000));
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		
+		TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		textMessage.setJMSMessageID("ID:redelivered-2");
+		textMessage.setJMSReplyTo(reqlayQ);
+		adapter.onMessage(textMessage);
+		// the body of a duplicate is neither read nor deserialized
+		textMessage.clearBody();
+		textMessage.setText("not json");
+		adapter.onMessage(textMessage);
+		
+		assertEquals("{\"ping\":\"ping1\"}", ((TextMessage) receiver.receive(1000)).getText());
+		assertEquals("{\"ping\":\"ping1\"}", ((TextMessage) receiver.receive(1000)).getText());
+		assertEquals(1, service.calls);
+	}
+	
+	@Test
+	public void testDuplicateByBusinessKey() throws JMSException {
+		SampleMessageServiceCounting service = new SampleMessageServiceCounting();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceCounting> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		adapter.setDuplicateDetector(new JMSDuplicateDetector(100, 60000, "ORDER_ID"));
+		
+		for (int i = 0; i < 3; i++) {
+			TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+			textMessage.setJMSMessageID("ID:resent-" + i);
+			textMessage.setStringProperty("ORDER_ID", "order-1");
+			adapter.onMessage(textMessage);
+		}
+		assertEquals(1, service.calls);
+		
+		// failed messages are processed again
+		for (int i = 0; i < 2; i++) {
+			TextMessage textMessage = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("fail")));
+			textMessage.setStringProperty("ORDER_ID", "order-2");
+			adapter.onMessage(textMessage);
+		}
+		assertEquals(3, service.calls);
+	}
+	
+	@Test
+	public void testExpiredRequestIsDropped() throws JMSException {
+		SampleMessageServiceCounting service = new SampleMessageServiceCounting();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceCounting> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		adapter.setMetrics(metrics);
+		QueueReceiver receiver = queueSession.createReceiver(reqlayQ);
+		
+		TextMessage expired = queueSession.createTextMessage("no json, it is never read");
+		expired.setJMSReplyTo(reqlayQ);
+		expired.setLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY, System.currentTimeMillis() - 1);
+		adapter.onMessage(expired);
+		assertNull(receiver.receive(200));
+		
+		TextMessage pending = queueSession.createTextMessage(OBJECT_MAPPER.serialize(new PingMessage("ping")));
+		pending.setJMSReplyTo(reqlayQ);
+		pending.setLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY, System.currentTimeMillis() + 10000);
+		adapter.onMessage(pending);
+		assertNotNull(receiver.receive(1000));
+		
+		assertEquals(1, service.calls);
+		assertEquals(1, metrics.getCount(SampleMessageServiceCounting.class, "ping", JMSMetrics.Event.EXPIRED));
+		assertEquals(1, metrics.getCount(SampleMessageServiceCounting.class, "ping", JMSMetrics.Event.CALL));
+	}
+	
+	@Test
+	public void testExpiredChunkReleasesGroup() throws Exception {
+		SampleMessageServiceCounting service = new SampleMessageServiceCounting();
+		JMSMessageListenerServiceAdapter<SampleMessageServiceCounting> adapter = JMSMessageListenerServiceAdapter.createAdapter(service, cf, OBJECT_MAPPER);
+		byte[] body = OBJECT_MAPPER.serialize(new PingMessage("ping")).getBytes(StandardCharsets.UTF_8);
+		int groups = JMSChunking.getAssemblyCount();
+		
+		adapter.onMessage(createChunk("expired", body, 1, System.currentTimeMillis() + 10000));
+		assertEquals(groups + 1, JMSChunking.getAssemblyCount());
+		adapter.onMessage(createChunk("expired", body, 2, System.currentTimeMillis() - 1));
+		assertEquals(groups, JMSChunking.getAssemblyCount());
+		
+		// the remaining chunks never arrive
+		adapter.onMessage(createChunk("abandoned", body, 1, System.currentTimeMillis() + 100));
+		assertEquals(groups + 1, JMSChunking.getAssemblyCount());
+		Thread.sleep(500);
+		assertEquals(groups, JMSChunking.getAssemblyCount());
+		assertEquals(0, service.calls);
+	}
+	
+	private BytesMessage createChunk(String groupId, byte[] body, int sequence, long deadline) throws JMSException {
+		int length = body.length / 3;
+		BytesMessage chunk = queueSession.createBytesMessage();
+		chunk.writeBytes(body, (sequence - 1) * length, sequence < 3 ? length : body.length - 2 * length);
+		chunk.setStringProperty(JMSChunking.GROUP_ID_PROPERTY, groupId);
+		chunk.setIntProperty(JMSChunking.GROUP_SEQ_PROPERTY, sequence);
+		chunk.setIntProperty(JMSChunking.CHUNK_COUNT_PROPERTY, 3);
+		chunk.setLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY, deadline);
+		chunk.reset();
+		return chunk;
+	}
+	
+	@Test
+	public void testDuplicateWindow() throws Exception {
+		JMSDuplicateDetector detector = new JMSDuplicateDetector(2, 100);
+		assertNull(detector.register("a"));
+		assertNull(detector.register("b"));
+		assertNotNull(detector.register("a"));
+		// the oldest key is forgotten first
+		assertNull(detector.register("c"));
+		assertNull(detector.register("a"));
+		Thread.sleep(150);
+		assertNull(detector.register("c"));
+		assertEquals(1, detector.size());
+	}
 	
 	public static class SampleMessageServiceWithReply {
 		
@@ -152,6 +539,56 @@ public class JMSMessageListenerServiceAdapterTest {
 
 	}
 	
+	public static class SampleMessageServiceCounting {
+		private int calls;
+		
+		@JMSMessageReceiver
+		public PingMessage ping(PingMessage message) {
+			calls++;
+			if ("fail".equals(message.getPing())) {
+				throw new IllegalStateException("failed");
+			}
+			return new PingMessage(message.getPing() + calls);
+		}
+
+	}
+	
+	public static class SampleMessageServiceWithOperations {
+		
+		@JMSMessageReceiver
+		public PingMessage ping(PingMessage message) {
+			return message;
+		}
+		
+		@JMSMessageReceiver(operation = "echo")
+		public String echoPing(PingMessage message) {
+			return message.getPing();
+		}
+		
+	}
+	
+	public static class SampleMessageServiceWithDuplicateOperation {
+		
+		@JMSMessageReceiver
+		public PingMessage ping(PingMessage message) {
+			return message;
+		}
+		
+		@JMSMessageReceiver(operation = "ping")
+		public void observe(PingMessage message) {
+		}
+		
+	}
+	
+	public static class SampleMessageServiceWithStream {
+		
+		@JMSMessageReceiver
+		public Stream<PingMessage> ping(PingMessage message) {
+			return IntStream.range(0, 3).mapToObj(i -> new PingMessage(message.getPing() + i));
+		}
+		
+	}
+	
 	public static class SampleMessageServiceVoid {
 		
 		@JMSMessageReceiver
@@ -178,4 +615,35 @@ public class JMSMessageListenerServiceAdapterTest {
 
 	}
 
+	public static class SampleMessageServiceWithList {
+		
+		@JMSMessageReceiver
+		public String ping(List<PingMessage> messages) {
+			StringBuilder pings = new StringBuilder();
+			for (PingMessage message : messages) {
+				pings.append(pings.length() > 0 ? "," : "").append(message.getPing());
+			}
+			return pings.toString();
+		}
+
+	}
+
+	public static class SampleMessageServiceWithPrimitive {
+		
+		@JMSMessageReceiver
+		public int square(int value) {
+			return value * value;
+		}
+
+	}
+
+	static class SampleMessageServiceNonPublic {
+		
+		@JMSMessageReceiver
+		public String ping(PingMessage message) {
+			return message.getPing();
+		}
+
+	}
+
 }
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JMSReplyCacheTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private static final int JMS_TIMEOUT = 5000;
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private CountingLookupService receiver;
+	private JMSHistogramMetrics metrics;
+	private LookupService service;
+	private JMSServiceAdapterFactory factory;
+
+	@JMSCached(ttlMs = 500, maxEntries = 2)
+	public interface LookupService {
+
+		public JMSFuture<PingMessage> lookup(@JMSMessageHeaders Map<String, Object> messageHeaders, PingMessage message);
+
+		public JMSFuture<PingMessage> lookup(PingMessage message);
+
+	}
+
+	public static class CountingLookupService {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final CountDownLatch slowReply = new CountDownLatch(1);
+
+		@JMSMessageReceiver
+		public PingMessage lookup(PingMessage message) throws InterruptedException {
+			calls.incrementAndGet();
+			if ("slow".equals(message.getPing())) {
+				slowReply.await(JMS_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+			return message;
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://replycachetest");
+		broker.setBrokerName("replycachetest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://replycachetest?create=false");
+		qc = cf.createQueueConnection();
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue testQueue = queueSession.createQueue("TestQueue");
+		receiver = new CountingLookupService();
+		final JMSMessageListenerServiceAdapter<CountingLookupService> adapter = JMSMessageListenerServiceAdapter.createAdapter(receiver, cf, OBJECT_MAPPER);
+		queueSession.createReceiver(testQueue).setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		qc.start();
+		metrics = new JMSHistogramMetrics();
+		factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, testQueue, JMS_TIMEOUT);
+		factory.setMetrics(metrics);
+		service = factory.generateJMSServiceProxy(LookupService.class);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testHitWithoutRequest() throws Exception {
+		assertEquals(new PingMessage("hot"), lookup(new PingMessage("hot")));
+		try (JMSFuture<PingMessage> cached = service.lookup(new PingMessage("hot"))) {
+			assertTrue(cached.isDone());
+			assertEquals(new PingMessage("hot"), cached.get());
+		}
+		assertEquals(1, receiver.calls.get());
+
+		// headers are part of the key
+		Map<String, Object> headers = new HashMap<>();
+		headers.put("tenant", "a");
+		assertEquals(new PingMessage("hot"), service.lookup(headers, new PingMessage("hot")).get());
+		assertEquals(2, receiver.calls.get());
+
+		assertEquals(1, metrics.getCount(LookupService.class, "lookup(de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.CACHE_HIT));
+		assertEquals(1, metrics.getCount(LookupService.class, "lookup(de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.CACHE_MISS));
+		assertEquals(1, metrics.getCount(LookupService.class, "lookup(java.util.Map,de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.CACHE_MISS));
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		lookup(new PingMessage("hot"));
+		Thread.sleep(600);
+		lookup(new PingMessage("hot"));
+		assertEquals(2, receiver.calls.get());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws Exception {
+		lookup(new PingMessage("a"));
+		lookup(new PingMessage("b"));
+		lookup(new PingMessage("a"));
+		lookup(new PingMessage("c"));
+		assertEquals(3, receiver.calls.get());
+
+		lookup(new PingMessage("a"));
+		assertEquals(3, receiver.calls.get());
+		lookup(new PingMessage("b"));
+		assertEquals(4, receiver.calls.get());
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		lookup(new PingMessage("hot"));
+		factory.clearReplyCaches();
+		lookup(new PingMessage("hot"));
+		assertEquals(2, receiver.calls.get());
+	}
+
+	@Test
+	public void testClearDropsRepliesInFlight() throws Exception {
+		try (JMSFuture<PingMessage> inFlight = service.lookup(new PingMessage("slow"))) {
+			factory.clearReplyCaches();
+			receiver.slowReply.countDown();
+			assertEquals(new PingMessage("slow"), inFlight.get());
+		}
+		Thread.sleep(50);
+		lookup(new PingMessage("slow"));
+		assertEquals(2, receiver.calls.get());
+	}
+
+	private PingMessage lookup(PingMessage message) throws Exception {
+		PingMessage reply = service.lookup(message).get();
+		// the reply is cached by the thread delivering it, which may finish after the caller got it
+		Thread.sleep(50);
+		return reply;
+	}
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.adorsys.jmspojo.JMSMessageListenerServiceAdapterTest.SampleMessageServiceWithReply;
+
+public class JMSReplyChannelTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private static final int JMS_TIMEOUT = 5000;
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private Queue testQueue;
+	private Queue deadQueue;
+	private JMSConnectionPool pool;
+	private JMSReplyChannel replyChannel;
+	private JMSSampleService service;
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://replychanneltest");
+		broker.setBrokerName("replychanneltest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://replychanneltest?create=false");
+		qc = cf.createQueueConnection();
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		testQueue = queueSession.createQueue("TestQueue");
+		deadQueue = queueSession.createQueue("DeadQueue");
+		final JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER);
+		queueSession.createReceiver(testQueue).setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		qc.start();
+
+		pool = new JMSConnectionPool(cf, 1, 4, 10000);
+		replyChannel = new JMSReplyChannel(cf);
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, pool, testQueue, JMS_TIMEOUT);
+		factory.setReplyChannel(replyChannel);
+		service = factory.generateJMSServiceProxy(JMSSampleService.class);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		replyChannel.close();
+		pool.close();
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testManyOutstandingReplies() throws ExecutionException {
+		List<JMSFuture<PingMessage>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(service.ping(new PingMessage("ping" + i)));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			try (JMSFuture<PingMessage> future = futures.get(i)) {
+				assertEquals(new PingMessage("ping" + i), future.get());
+			}
+		}
+		assertEquals(0, replyChannel.getInFlightCount());
+	}
+
+	@Test
+	public void testTimeoutDeregisters() throws ExecutionException {
+		try (JMSFuture<PingMessage> future = service.ping(new PingMessage("lost"), deadQueue)) {
+			assertEquals(1, replyChannel.getInFlightCount());
+			try {
+				future.get(100, TimeUnit.MILLISECONDS);
+				fail("timeout expected");
+			} catch (TimeoutException e) {
+			}
+		}
+		assertEquals(0, replyChannel.getInFlightCount());
+	}
+
+	@Test
+	public void testNamedReplyQueue() throws Exception {
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		try (JMSReplyChannel namedChannel = new JMSReplyChannel(cf, queueSession.createQueue("ReplyQueue.node1"))) {
+			JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, pool, testQueue, JMS_TIMEOUT);
+			factory.setReplyChannel(namedChannel);
+			JMSSampleService namedService = factory.generateJMSServiceProxy(JMSSampleService.class);
+			try (JMSFuture<PingMessage> future = namedService.ping(new PingMessage("named"))) {
+				assertEquals(new PingMessage("named"), future.get());
+			}
+		}
+	}
+
+	@Test
+	public void testCloseFailsPending() throws TimeoutException {
+		JMSFuture<PingMessage> future = service.ping(new PingMessage("lost"), deadQueue);
+		replyChannel.close();
+		try {
+			future.get(1000, TimeUnit.MILLISECONDS);
+			fail("ExecutionException expected");
+		} catch (ExecutionException e) {
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JMSRequestCoalescerTest {
+
+	private static final JMSJacksonMapper OBJECT_MAPPER = new JMSJacksonMapper(new ObjectMapper());
+	private static final int JMS_TIMEOUT = 5000;
+	private ActiveMQConnectionFactory cf;
+	private BrokerService broker;
+	private QueueConnection qc;
+	private SlowLookupService receiver;
+	private JMSServiceAdapterFactory factory;
+
+	@JMSCoalesced
+	public interface LookupService {
+
+		public JMSFuture<PingMessage> lookup(PingMessage message);
+
+		public CompletableFuture<PingMessage> lookupAsync(PingMessage message);
+
+	}
+
+	public static class SlowLookupService {
+		private final AtomicInteger calls = new AtomicInteger();
+
+		@JMSMessageReceiver(operation = "lookup")
+		public PingMessage lookup(PingMessage message) throws InterruptedException {
+			calls.incrementAndGet();
+			Thread.sleep(200);
+			return message;
+		}
+
+		@JMSMessageReceiver(operation = "lookupAsync")
+		public PingMessage lookupAsync(PingMessage message) throws InterruptedException {
+			return lookup(message);
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		broker = new BrokerService();
+		broker.setPersistent(false);
+
+		// configure the broker
+		broker.addConnector("vm://coalescertest");
+		broker.setBrokerName("coalescertest");
+		broker.setUseShutdownHook(false);
+
+		broker.start();
+
+		cf = new ActiveMQConnectionFactory("vm://coalescertest?create=false");
+		qc = cf.createQueueConnection();
+		QueueSession queueSession = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue testQueue = queueSession.createQueue("TestQueue");
+		receiver = new SlowLookupService();
+		final JMSMessageListenerServiceAdapter<SlowLookupService> adapter = JMSMessageListenerServiceAdapter.createAdapter(receiver, cf, OBJECT_MAPPER);
+		queueSession.createReceiver(testQueue).setMessageListener(new MessageListener() {
+
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		qc.start();
+		factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, testQueue, JMS_TIMEOUT);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		qc.close();
+		broker.stop();
+		broker.waitUntilStopped();
+	}
+
+	@Test
+	public void testEqualCallsShareOneRequest() throws ExecutionException {
+		LookupService service = factory.generateJMSServiceProxy(LookupService.class);
+		List<JMSFuture<PingMessage>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(service.lookup(new PingMessage("hot")));
+		}
+		futures.add(service.lookup(new PingMessage("cold")));
+		for (int i = 0; i < 10; i++) {
+			try (JMSFuture<PingMessage> future = futures.get(i)) {
+				assertEquals(new PingMessage("hot"), future.get());
+			}
+		}
+		assertEquals(new PingMessage("cold"), futures.get(10).get());
+		assertEquals(2, receiver.calls.get());
+
+		// the reply has arrived, the next call sends a new request
+		assertEquals(new PingMessage("hot"), service.lookup(new PingMessage("hot")).get());
+		assertEquals(3, receiver.calls.get());
+	}
+
+	@Test
+	public void testClosedCallerLeavesOthers() throws Exception {
+		LookupService service = factory.generateJMSServiceProxy(LookupService.class);
+		JMSFuture<PingMessage> closed = service.lookup(new PingMessage("hot"));
+		CompletableFuture<PingMessage> waiting = service.lookupAsync(new PingMessage("hot"));
+		try (JMSFuture<PingMessage> open = service.lookup(new PingMessage("hot"))) {
+			closed.close();
+			assertTrue(closed.isCancelled());
+			assertEquals(new PingMessage("hot"), open.get());
+		}
+		// different methods are different operations
+		assertEquals(new PingMessage("hot"), waiting.get());
+		assertEquals(2, receiver.calls.get());
+	}
+
+	@Test(expected = JMSServiceException.class)
+	public void testCoalescedVoidMethodIsRejected() {
+		factory.generateJMSServiceProxy(CoalescedAudit.class);
+	}
+
+	public interface CoalescedAudit {
+
+		@JMSCoalesced
+		public void audit(PingMessage message);
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2016 Sandro Sonntag (sso@adorsys.de)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.adorsys.jmspojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.adorsys.jmspojo.JMSResourceHousekeeper.JMSScheduledTask;
+
+public class JMSResourceHousekeeperTest {
+
+	@Test
+	public void testScheduledTasksRunInOrder() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(3);
+		final StringBuffer order = new StringBuffer();
+		for (final int delay : new int[] {150, 50, 100}) {
+			JMSResourceHousekeeper.schedule(delay, new Runnable() {
+
+				@Override
+				public void run() {
+					order.append(delay).append(' ');
+					latch.countDown();
+				}
+			});
+		}
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertEquals("50 100 150 ", order.toString());
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		int pending = JMSResourceHousekeeper.getPendingCount();
+		JMSScheduledTask task = JMSResourceHousekeeper.schedule(50, runs::incrementAndGet);
+		assertEquals(pending + 1, JMSResourceHousekeeper.getPendingCount());
+		assertTrue(task.cancel());
+		assertTrue(task.isCancelled());
+		assertFalse(task.cancel());
+		assertEquals(pending, JMSResourceHousekeeper.getPendingCount());
+		Thread.sleep(150);
+		assertEquals(0, runs.get());
+	}
+
+	@Test
+	public void testDelayBeyondOneWheelRound() throws InterruptedException {
+		// one round of this wheel takes 4 ticks of 10 ms
+		JMSHashedWheelTimer timer = new JMSHashedWheelTimer("test-timer", 10, 4);
+		try {
+			final CountDownLatch latch = new CountDownLatch(1);
+			long start = System.nanoTime();
+			timer.schedule(150, latch::countDown);
+			assertTrue(latch.await(1, TimeUnit.SECONDS));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+			assertEquals(0, timer.getPendingCount());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void testBlockingTaskDoesNotDelayOthers() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		JMSResourceHousekeeper.schedule(10, () -> {
+			try {
+				release.await(2, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		JMSResourceHousekeeper.schedule(50, latch::countDown);
+		try {
+			assertTrue(latch.await(1, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void testShutdownAndRestart() throws InterruptedException {
+		final AtomicInteger runs = new AtomicInteger();
+		final CountDownLatch stopped = new CountDownLatch(1);
+		JMSResourceHousekeeper.schedule(100, runs::incrementAndGet);
+		JMSResourceHousekeeper.schedule(100, runs::incrementAndGet, stopped::countDown);
+		JMSResourceHousekeeper.stop();
+		assertTrue(stopped.await(1, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(0, runs.get());
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		JMSResourceHousekeeper.schedule(10, latch::countDown);
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+	}
+
+}
@@ -15,13 +15,17 @@
  */
 package de.adorsys.jmspojo;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import javax.jms.Destination;
 
 import de.adorsys.jmspojo.JMSFuture;
 import de.adorsys.jmspojo.JMSMessageHeaders;
 
+@JMSService
 public interface JMSSampleService {
 	
 	public void fireAndForget(PingMessage message);
@@ -36,4 +40,12 @@ public interface JMSSampleService {
 	
 	public JMSFuture<PingMessage> ping(PingMessage message, Destination destination);
 
+	public CompletableFuture<PingMessage> pingAsync(PingMessage message);
+
+	public JMSFuture<List<PingMessage>> pingAll(List<PingMessage> messages);
+
+	public JMSReplyStream<PingMessage> pingStream(PingMessage message);
+
+	public Stream<PingMessage> pingLines(PingMessage message);
+
 }
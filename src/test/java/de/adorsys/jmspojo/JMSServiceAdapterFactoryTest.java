@@ -15,16 +15,27 @@
  */
 package de.adorsys.jmspojo;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.Queue;
 import javax.jms.QueueConnection;
+import javax.jms.QueueReceiver;
 import javax.jms.QueueSession;
 import javax.jms.Session;
 import javax.jms.TextMessage;
@@ -41,6 +52,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import de.adorsys.jmspojo.JMSFuture;
 import de.adorsys.jmspojo.JMSJacksonMapper;
 import de.adorsys.jmspojo.JMSJavaFutureAdapter;
+import de.adorsys.jmspojo.JMSMessageListenerServiceAdapterTest.SampleMessageServiceWithReply;
 import de.adorsys.jmspojo.JMSServiceAdapterFactory;
 
 public class JMSServiceAdapterFactoryTest {
@@ -180,5 +192,519 @@ public class JMSServiceAdapterFactoryTest {
 			Assert.assertEquals(new PingMessage("dedicted response"), sampleMessage);
 		} 
 	}
+	
+	@Test
+	public void testPingPooled() throws InterruptedException, ExecutionException {
+		try (JMSConnectionPool pool = new JMSConnectionPool(cf, 1, 4, 10000)) {
+			JMSSampleService pooledService = new JMSServiceAdapterFactory(OBJECT_MAPPER, pool, defaultQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSSampleService.class);
+			for (int i = 0; i < 3; i++) {
+				try (JMSFuture<PingMessage> future = pooledService.ping(new PingMessage("signal" + i))) {
+					Assert.assertEquals(new PingMessage("signal" + i), future.get());
+				}
+			}
+			pooledService.fireAndForget(new PingMessage("signal"));
+			Assert.assertEquals(1, pool.getConnectionCount());
+			Assert.assertTrue(pool.getIdleSessionCount() >= 1);
+		}
+	}
+	
+	@Test
+	public void testPingCompletableFuture() throws InterruptedException, ExecutionException, TimeoutException {
+		CompletableFuture<PingMessage> future = service.pingAsync(new PingMessage("signal1"));
+		Assert.assertEquals("signal1", future.thenApply(PingMessage::getPing).get(JMS_TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testPingCallback() throws InterruptedException {
+		final CountDownLatch replied = new CountDownLatch(1);
+		final AtomicReference<PingMessage> reply = new AtomicReference<>();
+		service.ping(new PingMessage("signal1")).whenComplete((message, failure) -> {
+			reply.set(message);
+			replied.countDown();
+		});
+		Assert.assertTrue(replied.await(JMS_TIMEOUT, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(new PingMessage("signal1"), reply.get());
+	}
+	
+	@Test
+	public void testCancel() throws ExecutionException {
+		HashMap<String, Object> headers = new HashMap<>();
+		headers.put("timeout", true);
+		JMSFuture<PingMessage> future = service.ping(headers, new PingMessage("signal1"));
+		CompletableFuture<PingMessage> completableFuture = future.toCompletableFuture();
+		Assert.assertTrue(future.cancel(false));
+		Assert.assertTrue(future.isCancelled());
+		Assert.assertTrue(completableFuture.isCompletedExceptionally());
+	}
+
+
+	@Test
+	public void testPingGenericType() throws ExecutionException {
+		try (JMSFuture<List<PingMessage>> future = service.pingAll(Arrays.asList(new PingMessage("ping1"), new PingMessage("ping2")))) {
+			List<PingMessage> replies = future.get();
+			Assert.assertEquals(Arrays.asList(new PingMessage("ping1"), new PingMessage("ping2")), replies);
+		}
+	}
+
+	@Test
+	public void testPingWithBytesMapper() throws JMSException, ExecutionException {
+		JMSJacksonBytesMapper bytesMapper = new JMSJacksonBytesMapper(new ObjectMapper());
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue bytesQueue = session.createQueue("BytesQueue");
+		final JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, bytesMapper);
+		session.createReceiver(bytesQueue).setMessageListener(new MessageListener() {
+			
+			@Override
+			public void onMessage(Message message) {
+				if (message instanceof BytesMessage) {
+					adapter.onMessage(message);
+				}
+			}
+		});
+		JMSSampleService bytesService = new JMSServiceAdapterFactory(bytesMapper, cf, bytesQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSSampleService.class);
+		try (JMSFuture<PingMessage> future = bytesService.ping(new PingMessage("bytes"))) {
+			Assert.assertEquals(new PingMessage("bytes"), future.get());
+		}
+	}
+
+	@Test
+	public void testPingWithCborMapper() throws JMSException, ExecutionException {
+		JMSJacksonCborMapper cborMapper = new JMSJacksonCborMapper();
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue mixedQueue = session.createQueue("MixedQueue");
+		final JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER, cborMapper);
+		session.createReceiver(mixedQueue).setMessageListener(new MessageListener() {
+			
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		JMSSampleService cborService = new JMSServiceAdapterFactory(cborMapper, cf, mixedQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSSampleService.class);
+		JMSSampleService jsonService = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, mixedQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSSampleService.class);
+		try (JMSFuture<PingMessage> cborFuture = cborService.ping(new PingMessage("cbor"));
+				JMSFuture<PingMessage> jsonFuture = jsonService.ping(new PingMessage("json"))) {
+			Assert.assertEquals(new PingMessage("cbor"), cborFuture.get());
+			Assert.assertEquals(new PingMessage("json"), jsonFuture.get());
+		}
+	}
+
+	@Test
+	public void testPingWithCompression() throws JMSException, ExecutionException {
+		JMSJacksonBytesMapper bytesMapper = new JMSJacksonBytesMapper(new ObjectMapper());
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue compressedQueue = session.createQueue("CompressedQueue");
+		final JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER, bytesMapper);
+		adapter.setCompression(new JMSCompression(256));
+		session.createReceiver(compressedQueue).setMessageListener(new MessageListener() {
+			
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		StringBuilder ping = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			ping.append("ping").append(i);
+		}
+		for (JMSObjectMapper mapper : Arrays.asList(OBJECT_MAPPER, bytesMapper)) {
+			JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(mapper, cf, compressedQueue, JMS_TIMEOUT);
+			factory.setCompression(new JMSCompression(256));
+			JMSSampleService compressingService = factory.generateJMSServiceProxy(JMSSampleService.class);
+			try (JMSFuture<PingMessage> large = compressingService.ping(new PingMessage(ping.toString()));
+					JMSFuture<PingMessage> small = compressingService.ping(new PingMessage("small"))) {
+				Assert.assertEquals(new PingMessage(ping.toString()), large.get());
+				Assert.assertEquals(new PingMessage("small"), small.get());
+			}
+		}
+	}
+
+	@Test
+	public void testCompressionThreshold() throws JMSException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue auditQueue = session.createQueue("AuditQueue");
+		QueueReceiver receiver = session.createReceiver(auditQueue);
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setCompression(new JMSCompression(256));
+		JMSSampleService compressingService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		StringBuilder ping = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			ping.append("ping");
+		}
+		
+		compressingService.fireAndForget(new PingMessage("small"), auditQueue);
+		Message small = receiver.receive(1000);
+		Assert.assertTrue(small instanceof TextMessage);
+		Assert.assertFalse(small.propertyExists(JMSCompression.CONTENT_ENCODING_PROPERTY));
+		
+		compressingService.fireAndForget(new PingMessage(ping.toString()), auditQueue);
+		BytesMessage large = (BytesMessage) receiver.receive(1000);
+		Assert.assertEquals(JMSCompression.DEFLATE, large.getStringProperty(JMSCompression.CONTENT_ENCODING_PROPERTY));
+		Assert.assertTrue(large.getBodyLength() < ping.length() / 10);
+		Assert.assertEquals(new PingMessage(ping.toString()), JMSMessageBody.read(large, OBJECT_MAPPER, PingMessage.class));
+	}
+
+	@Test
+	public void testCompressionOfPlainTextMapper() throws JMSException {
+		// only the String methods, UTF-8 is written and read through the default methods
+		JMSObjectMapper plainMapper = new JMSObjectMapper() {
+			
+			@Override
+			public String serialize(Object object) {
+				return OBJECT_MAPPER.serialize(object);
+			}
+			
+			@Override
+			public <T> T deserialize(String serialized, Class<T> type) {
+				return OBJECT_MAPPER.deserialize(serialized, type);
+			}
+		};
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		StringBuilder ping = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			ping.append("pïng");
+		}
+		Message large = JMSMessageBody.createMessage(session, plainMapper, new PingMessage(ping.toString()), new JMSCompression(256));
+		Assert.assertTrue(large instanceof BytesMessage);
+		Assert.assertEquals(new PingMessage(ping.toString()), JMSMessageBody.read(large, plainMapper, PingMessage.class));
+		Message small = JMSMessageBody.createMessage(session, plainMapper, new PingMessage("pïng"), new JMSCompression(256));
+		Assert.assertEquals(new PingMessage("pïng"), JMSMessageBody.read(small, plainMapper, PingMessage.class));
+	}
+
+	@Test
+	public void testCompressionPoolIsBounded() {
+		List<JMSCompression.Codec> codecs = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			JMSCompression.Codec codec = JMSCompression.borrow();
+			codec.body.ensureCapacity(200 * 1024);
+			codec.compressed.ensureCapacity(50 * 1024);
+			codecs.add(codec);
+		}
+		for (JMSCompression.Codec codec : codecs) {
+			JMSCompression.release(codec);
+		}
+		Assert.assertTrue(JMSCompression.getPooledBytes() <= 4 * 1024 * 1024);
+	}
+
+	@Test
+	public void testPingWithChunking() throws JMSException, ExecutionException {
+		JMSJacksonBytesMapper bytesMapper = new JMSJacksonBytesMapper(new ObjectMapper());
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue chunkedQueue = session.createQueue("ChunkedQueue");
+		final JMSMessageListenerServiceAdapter<SampleMessageServiceWithReply> adapter = JMSMessageListenerServiceAdapter.createAdapter(new SampleMessageServiceWithReply(), cf, OBJECT_MAPPER, bytesMapper);
+		adapter.setChunking(new JMSChunking(1024));
+		session.createReceiver(chunkedQueue).setMessageListener(new MessageListener() {
+			
+			@Override
+			public void onMessage(Message message) {
+				adapter.onMessage(message);
+			}
+		});
+		StringBuilder ping = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			ping.append("ping").append(i);
+		}
+		for (JMSObjectMapper mapper : Arrays.asList(OBJECT_MAPPER, bytesMapper)) {
+			for (JMSCompression compression : Arrays.asList(null, new JMSCompression(256))) {
+				JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(mapper, cf, chunkedQueue, JMS_TIMEOUT);
+				factory.setChunking(new JMSChunking(1024));
+				factory.setCompression(compression);
+				JMSSampleService chunkingService = factory.generateJMSServiceProxy(JMSSampleService.class);
+				try (JMSFuture<PingMessage> large = chunkingService.ping(new PingMessage(ping.toString()));
+						JMSFuture<PingMessage> small = chunkingService.ping(new PingMessage("small"))) {
+					Assert.assertEquals(new PingMessage(ping.toString()), large.get());
+					Assert.assertEquals(new PingMessage("small"), small.get());
+				}
+			}
+		}
+		Assert.assertEquals(0, JMSChunking.getAssemblyCount());
+	}
+
+	@Test
+	public void testChunkGroup() throws JMSException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue auditQueue = session.createQueue("AuditQueue");
+		QueueReceiver receiver = session.createReceiver(auditQueue);
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setChunking(new JMSChunking(1024));
+		JMSSampleService chunkingService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		StringBuilder ping = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			ping.append("ping");
+		}
+		
+		chunkingService.fireAndForget(new PingMessage(ping.toString()), auditQueue);
+		JMSChunking.Assembly assembly = null;
+		for (int i = 1; i <= 4; i++) {
+			Message chunk = receiver.receive(1000);
+			Assert.assertEquals(i, chunk.getIntProperty("JMSXGroupSeq"));
+			Assert.assertEquals(4, chunk.getIntProperty(JMSChunking.CHUNK_COUNT_PROPERTY));
+			Assert.assertEquals("fireAndForget", chunk.getStringProperty(JMSMessageReceiver.OPERATION_PROPERTY));
+			assembly = JMSChunking.assemble(chunk, OBJECT_MAPPER, PingMessage.class);
+			Assert.assertEquals(i == 4, assembly != null);
+		}
+		Assert.assertEquals(new PingMessage(ping.toString()), assembly.read());
+		Assert.assertEquals(0, JMSChunking.getAssemblyCount());
+	}
+
+	@Test
+	public void testLimiterRejectsCalls() throws JMSException, ExecutionException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue deadQueue = session.createQueue("DeadQueue");
+		JMSAdaptiveLimiter limiter = new JMSAdaptiveLimiter(1, 1, 1, 0);
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setLimiter(limiter);
+		factory.setMetrics(metrics);
+		JMSSampleService limitedService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		
+		JMSFuture<PingMessage> unanswered = limitedService.ping(new PingMessage("lost"), deadQueue);
+		try {
+			limitedService.ping(new PingMessage("rejected"));
+			Assert.fail("JMSServiceException expected");
+		} catch (JMSServiceException e) {
+		}
+		unanswered.close();
+		Assert.assertEquals(0, limiter.getInFlightCount());
+		try (JMSFuture<PingMessage> future = limitedService.ping(new PingMessage("ping"))) {
+			Assert.assertEquals(new PingMessage("ping"), future.get());
+		}
+		Assert.assertEquals(1, metrics.getCount(JMSSampleService.class, "ping(de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.REJECTED));
+	}
+
+	@Test
+	public void testLimiterOfVoidAndFutureCalls() throws JMSException, ExecutionException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue deadQueue = session.createQueue("DeadQueue");
+		final AtomicInteger roundTrips = new AtomicInteger();
+		final AtomicInteger sends = new AtomicInteger();
+		JMSLimiter limiter = new JMSLimiter() {
+			@Override
+			public void acquire() {
+			}
+			
+			@Override
+			public void release(long roundTripNanos) {
+				roundTrips.incrementAndGet();
+			}
+			
+			@Override
+			public void release() {
+				sends.incrementAndGet();
+			}
+		};
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setLimiter(limiter);
+		JMSSampleService limitedService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		
+		for (int i = 0; i < 3; i++) {
+			try (JMSFuture<PingMessage> future = limitedService.ping(new PingMessage("ping"))) {
+				Assert.assertEquals(new PingMessage("ping"), future.get());
+			}
+			// sending takes no round trip, it must not become the baseline of the replies
+			limitedService.fireAndForget(new PingMessage("ping"), deadQueue);
+		}
+		Assert.assertEquals(3, roundTrips.get());
+		Assert.assertEquals(3, sends.get());
+	}
+
+	@Test
+	public void testDeadlineOfRequests() throws JMSException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue auditQueue = session.createQueue("AuditQueue");
+		QueueReceiver receiver = session.createReceiver(auditQueue);
+		
+		long start = System.currentTimeMillis();
+		service.ping(new PingMessage("ping"), auditQueue).close();
+		Message request = receiver.receive(1000);
+		long deadline = request.getLongProperty(JMSMessageReceiver.DEADLINE_PROPERTY);
+		Assert.assertTrue(deadline >= start + JMS_TIMEOUT && deadline <= System.currentTimeMillis() + JMS_TIMEOUT);
+		// the broker discards the request about its deadline
+		Assert.assertTrue(Math.abs(request.getJMSExpiration() - deadline) < 1000);
+		
+		// no reply, no deadline
+		service.fireAndForget(new PingMessage("audit"), auditQueue);
+		Message audit = receiver.receive(1000);
+		Assert.assertFalse(audit.propertyExists(JMSMessageReceiver.DEADLINE_PROPERTY));
+		Assert.assertEquals(0, audit.getJMSExpiration());
+	}
+
+	@Test
+	public void testBatchedInterface() throws JMSException, ExecutionException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue auditQueue = session.createQueue("AuditQueue");
+		QueueReceiver receiver = session.createReceiver(auditQueue);
+		try (JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT)) {
+			JMSAuditService auditService = factory.generateJMSServiceProxy(JMSAuditService.class);
+			for (int i = 0; i < 25; i++) {
+				auditService.audit(new PingMessage("audit" + i), auditQueue);
+			}
+			for (int i = 0; i < 25; i++) {
+				TextMessage message = (TextMessage) receiver.receive(1000);
+				Assert.assertEquals(new PingMessage("audit" + i), OBJECT_MAPPER.deserialize(message.getText(), PingMessage.class));
+			}
+			// methods with replies are never batched
+			try (JMSFuture<PingMessage> future = auditService.ping(new PingMessage("signal1"))) {
+				Assert.assertEquals(new PingMessage("signal1"), future.get());
+			}
+		}
+	}
+	
+	@Test
+	public void testFactoryBatching() throws JMSException {
+		QueueSession session = qc.createQueueSession(false, Session.AUTO_ACKNOWLEDGE);
+		Queue auditQueue = session.createQueue("AuditQueue");
+		QueueReceiver receiver = session.createReceiver(auditQueue);
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setBatching(100, 60000);
+		JMSSampleService batchedService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		batchedService.fireAndForget(new PingMessage("audit"), auditQueue);
+		Assert.assertNull(receiver.receive(100));
+		factory.close();
+		Assert.assertNotNull(receiver.receive(1000));
+	}
+	
+	@Test(expected = JMSServiceException.class)
+	public void testBatchedRequiresVoid() {
+		new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT).generateJMSServiceProxy(BatchedPingService.class);
+	}
+	
+	@Test
+	public void testWaitForAll() throws ExecutionException, TimeoutException {
+		@SuppressWarnings("unchecked")
+		JMSFuture<PingMessage>[] futures = new JMSFuture[20];
+		for (int i = 0; i < futures.length; i++) {
+			futures[i] = service.ping(new PingMessage("signal" + i));
+		}
+		JMSFuture.waitForAll(JMS_TIMEOUT, futures);
+		for (int i = 0; i < futures.length; i++) {
+			Assert.assertTrue(futures[i].isDone());
+			Assert.assertEquals(new PingMessage("signal" + i), futures[i].get());
+		}
+	}
+	
+	@Test
+	public void testWaitForAllTimeout() throws ExecutionException {
+		HashMap<String, Object> headers = new HashMap<>();
+		headers.put("timeout", true);
+		try (JMSFuture<PingMessage> lost = service.ping(headers, new PingMessage("lost"));
+				JMSFuture<PingMessage> replied = service.ping(new PingMessage("signal1"))) {
+			JMSFuture.waitForAll(200, replied, lost);
+			Assert.fail("timeout expected");
+		} catch (TimeoutException e) {
+		}
+	}
+	
+	@Test
+	public void testWaitForAnyAndCompletionOrder() throws ExecutionException, TimeoutException {
+		HashMap<String, Object> headers = new HashMap<>();
+		headers.put("timeout", true);
+		try (JMSFuture<PingMessage> lost = service.ping(headers, new PingMessage("lost"));
+				JMSFuture<PingMessage> replied = service.ping(new PingMessage("signal1"))) {
+			Assert.assertSame(replied, JMSFuture.waitForAny(JMS_TIMEOUT, lost, replied));
+		}
+		
+		List<JMSFuture<PingMessage>> futures = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(service.ping(new PingMessage("signal" + i)));
+		}
+		JMSFutureSelector<PingMessage> selector = new JMSFutureSelector<>(JMS_TIMEOUT, futures);
+		int replies = 0;
+		while (selector.hasNext()) {
+			Assert.assertTrue(futures.contains(selector.next()));
+			replies++;
+		}
+		Assert.assertEquals(10, replies);
+	}
+	
+	@Test
+	public void testMetrics() throws ExecutionException {
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, 200);
+		factory.setMetrics(metrics);
+		JMSSampleService measuredService = factory.generateJMSServiceProxy(JMSSampleService.class);
+		try (JMSFuture<PingMessage> future = measuredService.ping(new PingMessage("signal1"))) {
+			future.get();
+		}
+		Assert.assertEquals(1, metrics.getCount(JMSSampleService.class, "ping(de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.CALL));
+		for (JMSMetrics.Phase phase : Arrays.asList(JMSMetrics.Phase.SERIALIZE, JMSMetrics.Phase.SEND, JMSMetrics.Phase.REPLY, JMSMetrics.Phase.DESERIALIZE)) {
+			Assert.assertEquals(phase.name(), 1, metrics.getHistogram(JMSSampleService.class, "ping(de.adorsys.jmspojo.PingMessage)", phase).getCount());
+		}
+		
+		HashMap<String, Object> headers = new HashMap<>();
+		headers.put("timeout", true);
+		try (JMSFuture<PingMessage> future = measuredService.ping(headers, new PingMessage("lost"))) {
+			future.get();
+			Assert.fail("timeout expected");
+		} catch (ExecutionException e) {
+		}
+		Assert.assertEquals(1, metrics.getCount(JMSSampleService.class, "ping(java.util.Map,de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.TIMEOUT));
+		Assert.assertEquals(0, metrics.getCount(JMSSampleService.class, "ping(de.adorsys.jmspojo.PingMessage)", JMSMetrics.Event.TIMEOUT));
+		try {
+			metrics.getCount(JMSSampleService.class, "ping", JMSMetrics.Event.CALL);
+			Assert.fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+	
+	@Test
+	public void testMetricsOfInheritedMethods() throws ExecutionException, NoSuchMethodException {
+		JMSHistogramMetrics metrics = new JMSHistogramMetrics();
+		JMSServiceAdapterFactory factory = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT);
+		factory.setMetrics(metrics);
+		ExtendedPingService extendedService = factory.generateJMSServiceProxy(ExtendedPingService.class);
+		ProxiedPingService proxiedService = factory.generateJMSServiceProxy(ProxiedPingService.class);
+		Assert.assertTrue(Proxy.isProxyClass(proxiedService.getClass()));
+		try (JMSFuture<PingMessage> future = extendedService.ping(new PingMessage("generated"))) {
+			future.get();
+		}
+		try (JMSFuture<PingMessage> future = proxiedService.ping(new PingMessage("proxied"))) {
+			future.get();
+		}
+		Method ping = JMSSampleService.class.getMethod("ping", PingMessage.class);
+		Assert.assertEquals(1, metrics.getCount(ExtendedPingService.class, ping, JMSMetrics.Event.CALL));
+		Assert.assertEquals(1, metrics.getCount(ProxiedPingService.class, ping, JMSMetrics.Event.CALL));
+		Assert.assertEquals(0, metrics.getCount(JMSSampleService.class, ping, JMSMetrics.Event.CALL));
+	}
+	
+	@Test
+	public void testGeneratedImplementation() throws ExecutionException {
+		Assert.assertEquals("de.adorsys.jmspojo.JMSSampleService_JMSProxy", service.getClass().getName());
+		Assert.assertFalse(Proxy.isProxyClass(service.getClass()));
+		
+		ExtendedPingService extendedService = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT).generateJMSServiceProxy(ExtendedPingService.class);
+		Assert.assertEquals("de.adorsys.jmspojo.JMSServiceAdapterFactoryTest_ExtendedPingService_JMSProxy", extendedService.getClass().getName());
+		HashMap<String, Object> headers = new HashMap<>();
+		headers.put("test", true);
+		try (JMSFuture<PingMessage> future = extendedService.ping(new PingMessage("signal1"), headers)) {
+			Assert.assertEquals(new PingMessage("signal1"), future.get());
+		}
+		try (JMSFuture<PingMessage> future = extendedService.ping(new PingMessage("signal2"))) {
+			Assert.assertEquals(new PingMessage("signal2"), future.get());
+		}
+	}
+	
+	@Test
+	public void testDynamicProxyWithoutGeneratedImplementation() {
+		JMSAuditService auditService = new JMSServiceAdapterFactory(OBJECT_MAPPER, cf, defaultQueue, JMS_TIMEOUT).generateJMSServiceProxy(JMSAuditService.class);
+		Assert.assertTrue(Proxy.isProxyClass(auditService.getClass()));
+	}
+	
+	@JMSService
+	public interface ExtendedPingService extends JMSSampleService {
+		
+		public JMSFuture<PingMessage> ping(PingMessage message, @JMSMessageHeaders HashMap<String, Object> messageHeaders);
+		
+	}
+	
+	public interface ProxiedPingService extends JMSSampleService {
+	}
+	
+	public interface BatchedPingService {
+		
+		@JMSBatched
+		public JMSFuture<PingMessage> ping(PingMessage message);
+		
+	}
 
 }